@@ -0,0 +1,146 @@
+import com.docanalyzer.document.CompressedDocument;
+import com.docanalyzer.huggingface.PromptFragment;
+import com.docanalyzer.huggingface.PromptRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the per-message cost of building and writing the LLM request body before and after
+ * the cached prompt fragment, on the same document and questions, in one JVM.
+ * <p>
+ * baseline: decompress the stored document, concatenate system prompt, document and question
+ *           into a new String and serialize it with Jackson (the path before the cache).
+ * cached:   write the pre-encoded document fragment and encode only the question
+ *           (PromptRequest.writeTo, as PromptRequestWriter does).
+ * <p>
+ * Both are measured for a single prompt over the whole document and for map-reduce, where a
+ * message writes one body per segment. Segments are cut every SEGMENT_CHARS characters here,
+ * rather than at paragraph breaks as ChatService does, which does not change the cost.
+ * <p>
+ * Run through benchmarks/request-body-benchmark.sh.
+ */
+public class RequestBodyBenchmark {
+
+    // Same shape and size as ChatService's prompt parts
+    private static final String SYSTEM_PROMPT = "You are an expert document assistant, specialized in the business, financial, tax and legal sector." +
+            " Your task is to analyze the provided document text and provide an answer to the user query." +
+            " Focus on identifying key information." +
+            " Do not mention that you are an AI. Response in markdown format. If you don't know the answer, say so." +
+            " The document to analyze is the following: ";
+    private static final String USER_QUERY_PREFIX = "\n\nThe User query is the following: ";
+    private static final String MODEL = "meta-llama/Llama-3.3-70B-Instruct";
+    private static final String MAP_INSTRUCTION = "\n\nThis is only a part of the document: extract the information" +
+            " from this part that is relevant to the query. If this part contains nothing relevant, answer exactly: " +
+            "NO RELEVANT INFORMATION";
+    private static final int SEGMENT_CHARS = 24000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        String text = Files.readString(Path.of(args[0]), StandardCharsets.UTF_8);
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        CompressedDocument document = CompressedDocument.compress(text, 65536, 6);
+        ObjectMapper mapper = new ObjectMapper();
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long cpuBefore = THREADS.getCurrentThreadCpuTime();
+        PromptFragment fragment = PromptFragment.of(SYSTEM_PROMPT + text);
+        List<PromptFragment> segmentFragments = new ArrayList<>();
+        List<String> segments = segments(text);
+        for (int i = 0; i < segments.size(); i++) {
+            segmentFragments.add(PromptFragment.of(segmentHeader(i, segments.size()) + segments.get(i)));
+        }
+        System.out.printf("document: %d chars, %d bytes UTF-8, %d segments, %d messages%n",
+                text.length(), document.originalBytes(), segments.size(), messages);
+        System.out.printf("one-time cache build (both forms): %.1f KiB allocated, %.3f ms CPU%n",
+                (THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / 1024.0,
+                (THREADS.getCurrentThreadCpuTime() - cpuBefore) / 1_000_000.0);
+
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up the JIT and is not reported
+            boolean report = round == 1;
+            measure("single prompt, baseline", messages, report, question -> {
+                StringBuilder prompt = new StringBuilder(SYSTEM_PROMPT.length() + document.length() + 64);
+                prompt.append(SYSTEM_PROMPT);
+                document.appendTo(prompt);
+                serialize(mapper, prompt + USER_QUERY_PREFIX + question);
+            });
+            measure("single prompt, cached", messages, report, question ->
+                    new PromptRequest(MODEL, fragment, USER_QUERY_PREFIX + question).writeTo(new DiscardingOutputStream()));
+            measure("map-reduce, baseline", messages, report, question -> {
+                StringBuilder whole = new StringBuilder(document.length());
+                document.appendTo(whole);
+                List<String> parts = segments(whole);
+                for (int i = 0; i < parts.size(); i++) {
+                    serialize(mapper, segmentHeader(i, parts.size()) + parts.get(i) + USER_QUERY_PREFIX + question + MAP_INSTRUCTION);
+                }
+            });
+            measure("map-reduce, cached", messages, report, question -> {
+                String suffix = USER_QUERY_PREFIX + question + MAP_INSTRUCTION;
+                for (PromptFragment segment : segmentFragments) {
+                    new PromptRequest(MODEL, segment, suffix).writeTo(new DiscardingOutputStream());
+                }
+            });
+        }
+    }
+
+    private static void serialize(ObjectMapper mapper, String content) throws IOException {
+        Map<String, Object> body = Map.of(
+                "messages", List.of(Map.of("role", "user", "content", content)),
+                "model", MODEL,
+                "stream", false);
+        mapper.writeValue(new DiscardingOutputStream(), body);
+    }
+
+    private static List<String> segments(CharSequence text) {
+        List<String> segments = new ArrayList<>();
+        for (int start = 0; start < text.length(); start += SEGMENT_CHARS) {
+            segments.add(text.subSequence(start, Math.min(start + SEGMENT_CHARS, text.length())).toString());
+        }
+        return segments;
+    }
+
+    private static String segmentHeader(int index, int total) {
+        return SYSTEM_PROMPT + String.format(" The following is part %d of %d of the document: ", index + 1, total);
+    }
+
+    private static void measure(String name, int messages, boolean report, Body body) throws IOException {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long cpuBefore = THREADS.getCurrentThreadCpuTime();
+        for (int i = 0; i < messages; i++) {
+            body.write("Benchmark question " + i + ": what is the governing law?");
+        }
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long cpu = THREADS.getCurrentThreadCpuTime() - cpuBefore;
+        if (report) {
+            System.out.printf("%-24s %10.1f KiB allocated, %8.3f ms CPU per message%n",
+                    name, allocated / 1024.0 / messages, cpu / 1_000_000.0 / messages);
+        }
+    }
+
+    private interface Body {
+        void write(String question) throws IOException;
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
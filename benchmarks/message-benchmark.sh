@@ -0,0 +1,75 @@
+#!/usr/bin/env bash
+#
+# Measures the per-message cost of preparing and writing the LLM request body: heap allocated
+# and CPU time, as recorded by the application in documind.llm.request.allocated,
+# documind.llm.request.cpu and documind.chat.prompt-cache.build.
+#
+# It reports the running build only (the baseline has no such metrics). To compare the request
+# body cost before and after the prompt cache on the same document and questions, use
+# benchmarks/request-body-benchmark.sh.
+#
+# Usage:
+#   benchmarks/message-benchmark.sh <document> [messages]
+#
+# The application must be running (./mvnw quarkus:dev or the packaged jar) with MySQL and the
+# Presidio analyzer reachable. The request body is written before the LLM answers, so the
+# numbers are valid even with a dummy HF_TOKEN (the chat replies then contain an error event).
+# The first message of the session builds the pre-encoded document prompt; the following ones
+# reuse it, so run with enough messages for the steady state to dominate.
+#
+# A document longer than documind.chat.map-reduce.segment-chars is answered with one request per
+# segment (plus the reduce calls), all of which count towards the per-message numbers. The
+# remaining segment calls are cancelled as soon as one fails, so measure such documents with a
+# working HF_TOKEN; the number of request bodies written is printed to check this.
+#
+set -euo pipefail
+
+DOCUMENT="${1:?usage: $0 <document> [messages]}"
+MESSAGES="${2:-20}"
+PORT="${PORT:-8080}"
+BASE_URL="http://localhost:${PORT}"
+
+metric() {
+  # Sums every series of a Prometheus metric (all tag combinations)
+  curl -s "${BASE_URL}/q/metrics" | awk -v name="$1" '$1 ~ "^"name"([{]|$)" { sum += $2 } END { printf "%.0f", sum }'
+}
+
+metric_float() {
+  curl -s "${BASE_URL}/q/metrics" | awk -v name="$1" '$1 ~ "^"name"([{]|$)" { sum += $2 } END { printf "%.9f", sum }'
+}
+
+session=$(curl -s -X POST "${BASE_URL}/api/chat/new" | sed -n 's/.*"sessionId":"\([^"]*\)".*/\1/p')
+status=$(curl -s -o /dev/null -w '%{http_code}' -F "file=@${DOCUMENT}" "${BASE_URL}/api/chat/${session}/upload")
+if [[ "${status}" != "200" ]]; then
+  echo "Upload failed with HTTP ${status}" >&2
+  exit 1
+fi
+
+allocated_before=$(metric documind_llm_request_allocated_bytes_sum)
+cpu_before=$(metric_float documind_llm_request_cpu_seconds_sum)
+build_before=$(metric_float documind_chat_prompt_cache_build_seconds_sum)
+requests_before=$(metric documind_llm_request_cpu_seconds_count)
+
+for i in $(seq 1 "${MESSAGES}"); do
+  curl -s -N -o /dev/null -H 'Content-Type: application/json' \
+    -d "{\"message\": \"Benchmark question ${i}: what is the governing law?\"}" \
+    "${BASE_URL}/api/chat/${session}/message"
+done
+
+allocated_after=$(metric documind_llm_request_allocated_bytes_sum)
+cpu_after=$(metric_float documind_llm_request_cpu_seconds_sum)
+build_after=$(metric_float documind_chat_prompt_cache_build_seconds_sum)
+requests_after=$(metric documind_llm_request_cpu_seconds_count)
+
+curl -s -o /dev/null -X DELETE "${BASE_URL}/api/chat/${session}"
+
+awk -v n="${MESSAGES}" \
+    -v requests="$(( requests_after - requests_before ))" \
+    -v alloc="$(( allocated_after - allocated_before ))" \
+    -v cpu="$(echo "${cpu_after} - ${cpu_before}" | bc -l)" \
+    -v build="$(echo "${build_after} - ${build_before}" | bc -l)" \
+    'BEGIN {
+      printf "messages: %d (%d request bodies written)\n", n, requests
+      printf "request body: %.1f KiB allocated, %.3f ms CPU per message\n", alloc / n / 1024, cpu * 1000 / n
+      printf "document prompt encoding (cache misses): %.3f ms in total\n", build * 1000
+    }'
@@ -0,0 +1,22 @@
+#!/usr/bin/env bash
+#
+# Compares the heap allocated and CPU time spent per message on the LLM request body, before
+# (decompress + concatenate + serialize) and after (cached pre-encoded fragment) the prompt
+# cache, for the same document and questions. Needs no database, Presidio or LLM.
+#
+# Usage:
+#   benchmarks/request-body-benchmark.sh <plain-text document> [messages]
+#
+set -euo pipefail
+
+DOCUMENT="${1:?usage: $0 <plain-text document> [messages]}"
+MESSAGES="${2:-200}"
+
+cd "$(dirname "$0")/.."
+DOCUMENT="$(realpath "${DOCUMENT}")"
+
+./mvnw -q -B compile -Dquinoa.enabled=false
+./mvnw -q -B dependency:build-classpath -Dmdep.outputFile=target/benchmark.classpath
+
+java -Xmx2g -cp "target/classes:$(cat target/benchmark.classpath)" \
+    benchmarks/RequestBodyBenchmark.java "${DOCUMENT}" "${MESSAGES}"
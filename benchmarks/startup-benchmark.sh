@@ -0,0 +1,87 @@
+#!/usr/bin/env bash
+#
+# Measures time-to-first-successful-upload: the time from launching the application
+# until a document upload through /api/chat/{sessionId}/upload returns HTTP 200.
+#
+# Usage:
+#   benchmarks/startup-benchmark.sh <jvm|jvm-cds|native> [runs] [document]
+#
+#   jvm      target/quarkus-app/quarkus-run.jar                (./mvnw package)
+#   jvm-cds  same jar with target/quarkus-app/app-cds.jsa      (./mvnw package -Dfast-start, then benchmarks/train-appcds.sh)
+#   native   target/*-runner                                   (./mvnw package -Dnative)
+#
+# MySQL and the Presidio analyzer must be reachable as configured in application.properties
+# (see docker-compose.yml). The upload does not call the LLM, so HF_TOKEN can be a dummy value.
+#
+set -euo pipefail
+
+MODE="${1:?usage: $0 <jvm|jvm-cds|native> [runs] [document]}"
+RUNS="${2:-5}"
+DOCUMENT="${3:-}"
+PORT="${PORT:-8080}"
+BASE_URL="http://localhost:${PORT}/api/chat"
+TIMEOUT_SECONDS="${TIMEOUT_SECONDS:-120}"
+
+cd "$(dirname "$0")/.."
+
+if [[ -z "${DOCUMENT}" ]]; then
+  DOCUMENT="$(mktemp --suffix=.txt)"
+  trap 'rm -f "${DOCUMENT}"' EXIT
+  echo "This agreement is made between John Smith and Acme Corporation, 1 Main Street, Springfield." > "${DOCUMENT}"
+fi
+
+case "${MODE}" in
+  jvm)
+    COMMAND=(java -jar target/quarkus-app/quarkus-run.jar)
+    ;;
+  jvm-cds)
+    COMMAND=(java -XX:SharedArchiveFile=target/quarkus-app/app-cds.jsa -Xshare:auto -jar target/quarkus-app/quarkus-run.jar)
+    ;;
+  native)
+    COMMAND=("$(ls target/*-runner | head -n 1)")
+    ;;
+  *)
+    echo "Unknown mode: ${MODE}" >&2
+    exit 1
+    ;;
+esac
+
+export HF_TOKEN="${HF_TOKEN:-benchmark}"
+export QUARKUS_HTTP_PORT="${PORT}"
+
+now_ms() {
+  echo $(( $(date +%s%N) / 1000000 ))
+}
+
+results=()
+for run in $(seq 1 "${RUNS}"); do
+  start=$(now_ms)
+  "${COMMAND[@]}" > "target/startup-benchmark-${MODE}-${run}.log" 2>&1 &
+  pid=$!
+
+  elapsed=""
+  while (( $(now_ms) - start < TIMEOUT_SECONDS * 1000 )); do
+    session=$(curl -s -X POST "${BASE_URL}/new" | sed -n 's/.*"sessionId":"\([^"]*\)".*/\1/p' || true)
+    if [[ -n "${session}" ]]; then
+      status=$(curl -s -o /dev/null -w '%{http_code}' -F "file=@${DOCUMENT}" "${BASE_URL}/${session}/upload" || true)
+      if [[ "${status}" == "200" ]]; then
+        elapsed=$(( $(now_ms) - start ))
+        break
+      fi
+    fi
+    sleep 0.05
+  done
+
+  kill "${pid}" 2>/dev/null || true
+  wait "${pid}" 2>/dev/null || true
+
+  if [[ -z "${elapsed}" ]]; then
+    echo "Run ${run}: no successful upload within ${TIMEOUT_SECONDS}s (see target/startup-benchmark-${MODE}-${run}.log)" >&2
+    exit 1
+  fi
+  echo "Run ${run}: ${elapsed} ms"
+  results+=("${elapsed}")
+done
+
+sorted=($(printf '%s\n' "${results[@]}" | sort -n))
+echo "${MODE}: min ${sorted[0]} ms, median ${sorted[$(( ${#sorted[@]} / 2 ))]} ms, max ${sorted[-1]} ms over ${RUNS} runs"
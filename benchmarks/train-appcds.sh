@@ -0,0 +1,73 @@
+#!/usr/bin/env bash
+#
+# Records an AppCDS archive during a training run that uploads real documents, so the classes
+# of the extraction and anonymization path (Tika, PDFBox, POI, Presidio client) are archived too.
+# The archive generated by the fast-start profile alone only covers what is loaded at startup.
+#
+# Usage:
+#   ./mvnw package -Dfast-start
+#   benchmarks/train-appcds.sh [document...]
+#
+# Writes target/quarkus-app/app-cds.jsa (a dynamic archive, -XX:ArchiveClassesAtExit). Like any CDS
+# archive it is only usable by the exact JDK build that created it, so run this with the JDK of the
+# image that will use it (see src/main/docker/Dockerfile.jvm-fast-start).
+#
+# MySQL and the Presidio analyzer must be reachable as configured in application.properties
+# (see docker-compose.yml). The upload does not call the LLM, so HF_TOKEN can be a dummy value.
+#
+set -euo pipefail
+
+PORT="${PORT:-8080}"
+BASE_URL="http://localhost:${PORT}/api/chat"
+TIMEOUT_SECONDS="${TIMEOUT_SECONDS:-120}"
+
+cd "$(dirname "$0")/.."
+
+ARCHIVE="target/quarkus-app/app-cds.jsa"
+DOCUMENTS=("$@")
+if [[ ${#DOCUMENTS[@]} -eq 0 ]]; then
+  TEXT="$(mktemp --suffix=.txt)"
+  trap 'rm -f "${TEXT}"' EXIT
+  echo "This agreement is made between John Smith and Acme Corporation, 1 Main Street, Springfield." > "${TEXT}"
+  DOCUMENTS=("${TEXT}" src/main/resources/extraction/warm-up.pdf src/main/resources/extraction/warm-up.docx)
+fi
+
+export HF_TOKEN="${HF_TOKEN:-training}"
+export QUARKUS_HTTP_PORT="${PORT}"
+
+rm -f "${ARCHIVE}"
+java -XX:ArchiveClassesAtExit="${ARCHIVE}" -jar target/quarkus-app/quarkus-run.jar > target/train-appcds.log 2>&1 &
+pid=$!
+
+session=""
+deadline=$(( $(date +%s) + TIMEOUT_SECONDS ))
+while [[ -z "${session}" ]]; do
+  if (( $(date +%s) > deadline )); then
+    kill "${pid}" 2>/dev/null || true
+    echo "Application did not start within ${TIMEOUT_SECONDS}s (see target/train-appcds.log)" >&2
+    exit 1
+  fi
+  sleep 0.5
+  session=$(curl -s -X POST "${BASE_URL}/new" | sed -n 's/.*"sessionId":"\([^"]*\)".*/\1/p' || true)
+done
+
+for document in "${DOCUMENTS[@]}"; do
+  status=$(curl -s -o /dev/null -w '%{http_code}' -F "file=@${document}" "${BASE_URL}/${session}/upload")
+  echo "Uploaded ${document}: HTTP ${status}"
+  if [[ "${status}" != "200" ]]; then
+    kill "${pid}" 2>/dev/null || true
+    echo "Training upload failed (see target/train-appcds.log)" >&2
+    exit 1
+  fi
+done
+curl -s -o /dev/null -X DELETE "${BASE_URL}/${session}"
+
+# The archive is written when the JVM exits normally
+kill -TERM "${pid}"
+wait "${pid}" || true
+
+if [[ ! -s "${ARCHIVE}" ]]; then
+  echo "No archive was written (see target/train-appcds.log)" >&2
+  exit 1
+fi
+echo "Wrote ${ARCHIVE} ($(du -h "${ARCHIVE}" | cut -f1))"
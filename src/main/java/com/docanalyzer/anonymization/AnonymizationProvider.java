@@ -16,7 +16,21 @@ public interface AnonymizationProvider {
      * @return An AnonymizationResult containing the anonymized text and the placeholder-value mappings.
      * @throws AnonymizationException if the anonymization process fails.
      */
-    AnonymizationResult anonymize(String text, String chatId) throws AnonymizationException;
+    default AnonymizationResult anonymize(String text, String chatId) throws AnonymizationException {
+        return anonymize(text, chatId, new PlaceholderRegistry());
+    }
+
+    /**
+     * Anonymizes the given text, taking placeholders from the given registry so that values
+     * shared with other documents of the same session get the same placeholder.
+     *
+     * @param text The original text to anonymize.
+     * @param chatId The chat ID to associate with this anonymization request.
+     * @param registry The registry assigning placeholders to entity values.
+     * @return An AnonymizationResult containing the anonymized text and the placeholder-value mappings used in it.
+     * @throws AnonymizationException if the anonymization process fails.
+     */
+    AnonymizationResult anonymize(String text, String chatId, PlaceholderRegistry registry) throws AnonymizationException;
 
     /**
      * Represents the result of an anonymization process.
@@ -1,5 +1,7 @@
 package com.docanalyzer.anonymization;
 
+import com.docanalyzer.jfr.DeanonymizeEvent;
+import com.docanalyzer.jfr.Outcome;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -39,11 +41,52 @@ public class AnonymizationService {
             return originalDocument;
         }
 
-        AnonymizationProvider.AnonymizationResult result = anonymizationProvider.anonymize(originalDocument, chatSessionId);
+        PlaceholderRegistry registry = newPlaceholderRegistry(chatSessionId);
+        String anonymizedDocument = anonymizeDocument(originalDocument, chatSessionId, registry);
+        saveMappings(registry, chatSessionId);
 
-        placeholderService.savePlaceholders(result, chatSessionId);
+        return anonymizedDocument;
+    }
 
-        return result.getAnonymizedText();
+    /**
+     * Anonymizes one of several documents of a chat session without storing the mappings.
+     * Documents sharing the registry get consistent placeholders; call
+     * {@link #saveMappings(PlaceholderRegistry, String)} once all of them are anonymized.
+     *
+     * @param originalDocument The document text to anonymize.
+     * @param chatSessionId The ID of the chat session.
+     * @param registry The registry shared by all documents of the session.
+     * @return The anonymized document text.
+     */
+    public String anonymizeDocument(String originalDocument, String chatSessionId, PlaceholderRegistry registry) {
+        if (originalDocument == null || originalDocument.isBlank()) {
+            return originalDocument;
+        }
+        return anonymizationProvider.anonymize(originalDocument, chatSessionId, registry).getAnonymizedText();
+    }
+
+    /**
+     * Creates a placeholder registry seeded with the mappings already stored for a chat session,
+     * so new documents reuse existing placeholders.
+     *
+     * @param chatSessionId The ID of the chat session.
+     * @return The seeded registry.
+     */
+    @Transactional
+    public PlaceholderRegistry newPlaceholderRegistry(String chatSessionId) {
+        return new PlaceholderRegistry(mappingRepository.findByChatSessionId(chatSessionId));
+    }
+
+    /**
+     * Stores the mappings of the registry that have not been stored yet.
+     *
+     * @param registry The registry used to anonymize the session's documents.
+     * @param chatSessionId The ID of the chat session.
+     */
+    public void saveMappings(PlaceholderRegistry registry, String chatSessionId) {
+        Map<String, String> unsaved = registry.unsavedMappings();
+        placeholderService.savePlaceholders(unsaved, chatSessionId);
+        registry.markSaved(unsaved.keySet());
     }
 
     /**
@@ -59,21 +102,37 @@ public class AnonymizationService {
             return anonymizedResponse;
         }
 
-        List<PlaceholderMapping> mappings = mappingRepository.findByChatSessionId(chatSessionId);
-        if (mappings.isEmpty()) {
-            return anonymizedResponse; // No mappings for this session
-        }
+        DeanonymizeEvent event = new DeanonymizeEvent();
+        event.begin();
+        List<PlaceholderMapping> mappings = null;
+        String outcome = Outcome.FAILED;
+        try {
+            mappings = mappingRepository.findByChatSessionId(chatSessionId);
+            if (mappings.isEmpty()) {
+                outcome = Outcome.OK;
+                return anonymizedResponse; // No mappings for this session
+            }
 
-        // A simple string replacement. For more complex scenarios (e.g., overlapping placeholders),
-        // a more sophisticated approach might be needed.
-        String deAnonymizedText = anonymizedResponse;
-        for (PlaceholderMapping mapping : mappings) {
-            // Ensure placeholder is replaced correctly, avoid replacing parts of other words
-            // or already replaced placeholders. Using Pattern.quote for literal replacement.
-            deAnonymizedText = deAnonymizedText.replace(mapping.getPlaceholder(), mapping.getOriginalValue());
+            // A simple string replacement. For more complex scenarios (e.g., overlapping placeholders),
+            // a more sophisticated approach might be needed.
+            String deAnonymizedText = anonymizedResponse;
+            for (PlaceholderMapping mapping : mappings) {
+                // Ensure placeholder is replaced correctly, avoid replacing parts of other words
+                // or already replaced placeholders. Using Pattern.quote for literal replacement.
+                deAnonymizedText = deAnonymizedText.replace(mapping.getPlaceholder(), mapping.getOriginalValue());
+            }
+            outcome = Outcome.OK;
+            return deAnonymizedText;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.sessionId = chatSessionId;
+                event.chars = anonymizedResponse.length();
+                event.mappings = mappings == null ? 0 : mappings.size();
+                event.outcome = outcome;
+                event.commit();
+            }
         }
-
-        return deAnonymizedText;
     }
 
     /**
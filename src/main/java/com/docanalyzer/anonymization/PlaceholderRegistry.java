@@ -0,0 +1,92 @@
+package com.docanalyzer.anonymization;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Assigns placeholders to recognized entities so that the same value always gets the same
+ * placeholder, across every document anonymized with this registry.
+ * <p>
+ * A registry can be seeded with the mappings already stored for a chat session, so new
+ * documents reuse existing placeholders and never collide with them. It is safe to share
+ * between threads anonymizing documents in parallel.
+ */
+public class PlaceholderRegistry {
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\[\\[(.+)_(\\d+)]]");
+
+    private final Map<String, String> placeholdersByValue = new HashMap<>(); // entity type + value -> placeholder
+    private final Map<String, String> valuesByPlaceholder = new LinkedHashMap<>(); // placeholder -> original value
+    private final Map<String, Integer> counters = new HashMap<>(); // entity type -> last used number
+    private final Set<String> saved = new HashSet<>();
+
+    public PlaceholderRegistry() {
+    }
+
+    /**
+     * Creates a registry that already knows the given (persisted) mappings.
+     *
+     * @param existingMappings The mappings already stored for the chat session.
+     */
+    public PlaceholderRegistry(List<PlaceholderMapping> existingMappings) {
+        for (PlaceholderMapping mapping : existingMappings) {
+            String placeholder = mapping.getPlaceholder();
+            valuesByPlaceholder.put(placeholder, mapping.getOriginalValue());
+            saved.add(placeholder);
+
+            Matcher matcher = PLACEHOLDER_PATTERN.matcher(placeholder);
+            if (matcher.matches()) {
+                String entityType = matcher.group(1);
+                placeholdersByValue.putIfAbsent(key(entityType, mapping.getOriginalValue()), placeholder);
+                counters.merge(entityType, Integer.parseInt(matcher.group(2)), Math::max);
+            }
+        }
+    }
+
+    /**
+     * Returns the placeholder for an entity value, creating a new one if the value has not been seen before.
+     *
+     * @param entityType The entity type reported by the recognizer (e.g. "PERSON").
+     * @param originalValue The original text of the entity.
+     * @return The placeholder, e.g. "[[PERSON_1]]".
+     */
+    public synchronized String placeholderFor(String entityType, String originalValue) {
+        String type = entityType.toUpperCase();
+        return placeholdersByValue.computeIfAbsent(key(type, originalValue), k -> {
+            int count = counters.merge(type, 1, Integer::sum);
+            String placeholder = String.format("[[%s_%d]]", type, count);
+            valuesByPlaceholder.put(placeholder, originalValue);
+            return placeholder;
+        });
+    }
+
+    /**
+     * @return The placeholder -> original value mappings that have not been saved yet.
+     */
+    public synchronized Map<String, String> unsavedMappings() {
+        Map<String, String> unsaved = new LinkedHashMap<>();
+        valuesByPlaceholder.forEach((placeholder, originalValue) -> {
+            if (!saved.contains(placeholder)) {
+                unsaved.put(placeholder, originalValue);
+            }
+        });
+        return unsaved;
+    }
+
+    /**
+     * Marks the given placeholders as persisted.
+     */
+    public synchronized void markSaved(Set<String> placeholders) {
+        saved.addAll(placeholders);
+    }
+
+    private static String key(String entityType, String originalValue) {
+        return entityType + '\u0000' + originalValue;
+    }
+}
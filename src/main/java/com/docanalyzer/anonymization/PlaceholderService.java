@@ -1,10 +1,13 @@
 package com.docanalyzer.anonymization;
 
+import com.docanalyzer.jfr.MappingPersistEvent;
+import com.docanalyzer.jfr.Outcome;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class PlaceholderService {
@@ -18,15 +21,36 @@ public class PlaceholderService {
 
     @Transactional
     public String savePlaceholders(AnonymizationProvider.AnonymizationResult result , String chatSessionId) {
-        result.getMappings().forEach((placeholder, originalValue) -> {
-            PlaceholderMapping mapping = new PlaceholderMapping();
-            mapping.setChatSessionId(chatSessionId);
-            mapping.setPlaceholder(placeholder);
-            mapping.setOriginalValue(originalValue);
-            mappingRepository.persist(mapping);
-        });
+        savePlaceholders(result.getMappings(), chatSessionId);
 
         return result.getAnonymizedText();
     }
 
+    @Transactional
+    public void savePlaceholders(Map<String, String> mappings, String chatSessionId) {
+        MappingPersistEvent event = new MappingPersistEvent();
+        event.begin();
+        String outcome = Outcome.FAILED;
+        try {
+            mappings.forEach((placeholder, originalValue) -> {
+                PlaceholderMapping mapping = new PlaceholderMapping();
+                mapping.setChatSessionId(chatSessionId);
+                mapping.setPlaceholder(placeholder);
+                mapping.setOriginalValue(originalValue);
+                mappingRepository.persist(mapping);
+            });
+            // Flush so the event covers the inserts, not just queuing them for commit
+            mappingRepository.flush();
+            outcome = Outcome.OK;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.sessionId = chatSessionId;
+                event.mappings = mappings.size();
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
 }
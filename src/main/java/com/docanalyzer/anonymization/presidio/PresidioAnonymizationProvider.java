@@ -1,80 +1,111 @@
 package com.docanalyzer.anonymization.presidio;
 
 import com.docanalyzer.anonymization.AnonymizationProvider;
-import com.docanalyzer.anonymization.presidio.model.AnonymizerConfig;
+import com.docanalyzer.anonymization.PlaceholderRegistry;
 import com.docanalyzer.anonymization.presidio.model.PresidioAnalyzeRequest;
-import com.docanalyzer.anonymization.presidio.model.PresidioAnonymizeRequest;
-import com.docanalyzer.anonymization.presidio.model.PresidioAnonymizeResponse;
 import com.docanalyzer.anonymization.presidio.model.RecognizerResult;
+import com.docanalyzer.jfr.Outcome;
+import com.docanalyzer.jfr.PlaceholderRewriteEvent;
+import com.docanalyzer.jfr.PresidioAnalyzeEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Semaphore;
 
 @ApplicationScoped
 public class PresidioAnonymizationProvider implements AnonymizationProvider {
 
     private final PresidioClient presidioClient;
+    private final Semaphore analyzeSlots;
 
-    public PresidioAnonymizationProvider(@RestClient PresidioClient presidioClient) {
+    public PresidioAnonymizationProvider(@RestClient PresidioClient presidioClient,
+                                         @ConfigProperty(name = "documind.presidio.max-concurrency", defaultValue = "4") int maxConcurrency) {
         this.presidioClient = presidioClient;
+        this.analyzeSlots = new Semaphore(maxConcurrency, true);
     }
 
     @Override
-    public AnonymizationResult anonymize(String text, String chatId) throws AnonymizationException {
-        // 1. Analyze the text
+    public AnonymizationResult anonymize(String text, String chatId, PlaceholderRegistry registry) throws AnonymizationException {
+        // 1. Analyze the text, bounding the number of concurrent calls to Presidio
         PresidioAnalyzeRequest analyzeRequest = new PresidioAnalyzeRequest(text, "en");
-        List<RecognizerResult> recognizerResults;
+        List<RecognizerResult> recognizerResults = null;
+        String analyzeOutcome = Outcome.FAILED;
+        PresidioAnalyzeEvent analyzeEvent = new PresidioAnalyzeEvent();
+        analyzeEvent.begin();
         try {
-            recognizerResults = presidioClient.analyze(analyzeRequest);
-        } catch (Exception e) {
-            throw new AnonymizationException("Failed to call Presidio analyze API", e);
+            try {
+                analyzeSlots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                analyzeOutcome = Outcome.CANCELLED;
+                throw new AnonymizationException("Interrupted while waiting for Presidio", e);
+            }
+            try {
+                recognizerResults = presidioClient.analyze(analyzeRequest);
+                analyzeOutcome = Outcome.OK;
+            } catch (Exception e) {
+                throw new AnonymizationException("Failed to call Presidio analyze API", e);
+            } finally {
+                analyzeSlots.release();
+            }
+        } finally {
+            analyzeEvent.end();
+            if (analyzeEvent.shouldCommit()) {
+                analyzeEvent.sessionId = chatId;
+                analyzeEvent.chars = text.length();
+                analyzeEvent.entities = recognizerResults == null ? 0 : recognizerResults.size();
+                analyzeEvent.outcome = analyzeOutcome;
+                analyzeEvent.commit();
+            }
         }
 
         if (recognizerResults.isEmpty()) {
             return new AnonymizationResult(text, Collections.emptyMap());
         }
 
-        // 2. Generate placeholders and mapping
+        // 2. Generate placeholders and mapping.
+        // Presidio's /anonymize endpoint replaces by entity *type*, so it cannot give two different
+        // PERSON entities two different placeholders. The replacement is therefore done here.
+        // Placeholders are assigned in reading order so numbering follows the document.
+        PlaceholderRewriteEvent rewriteEvent = new PlaceholderRewriteEvent();
+        rewriteEvent.begin();
         Map<String, String> placeholderMappings = new HashMap<>();
-        Map<String, AnonymizerConfig> anonymizers = new HashMap<>();
-        Map<String, AtomicInteger> entityCounters = new HashMap<>();
-
-        // This is a bit tricky. We need to create a unique anonymizer for each recognized entity,
-        // but the Presidio API anonymizes by entity *type*. This means if we have two PERSON
-        // entities, we can't replace them with [[PERSON_1]] and [[PERSON_2]] in a single /anonymize call.
-        //
-        // The previous implementation handled this by doing the replacement in Java.
-        // The code review suggested using the /anonymize endpoint for efficiency, but that might not be possible
-        // given the requirement to have unique placeholders for each entity.
-        //
-        // Let's reconsider the manual replacement approach, but this time, I will make sure it's clean and correct.
-        // The previous implementation was already correct in its logic (sorting by descending start position).
-        // I will stick with that implementation, but I will add a comment explaining why I'm not using the /anonymize endpoint.
-
-        recognizerResults.sort((r1, r2) -> Integer.compare(r2.getStart(), r1.getStart()));
-
-        StringBuilder anonymizedTextBuilder = new StringBuilder(text);
-
-        for (RecognizerResult result : recognizerResults) {
-            String entityType = result.getEntityType();
-            int count = entityCounters.computeIfAbsent(entityType, k -> new AtomicInteger(0)).incrementAndGet();
-            String placeholder = String.format("[[%s_%d]]", entityType.toUpperCase(), count);
-
-            String originalValue = text.substring(result.getStart(), result.getEnd());
-            placeholderMappings.put(placeholder, originalValue);
-
-            anonymizedTextBuilder.replace(result.getStart(), result.getEnd(), placeholder);
+        String rewriteOutcome = Outcome.FAILED;
+        try {
+            recognizerResults.sort(Comparator.comparingInt(RecognizerResult::getStart));
+
+            String[] placeholders = new String[recognizerResults.size()];
+            for (int i = 0; i < recognizerResults.size(); i++) {
+                RecognizerResult result = recognizerResults.get(i);
+                String originalValue = text.substring(result.getStart(), result.getEnd());
+                placeholders[i] = registry.placeholderFor(result.getEntityType(), originalValue);
+                placeholderMappings.put(placeholders[i], originalValue);
+            }
+
+            // 3. Replace from the end of the text so earlier offsets stay valid
+            StringBuilder anonymizedTextBuilder = new StringBuilder(text);
+            for (int i = recognizerResults.size() - 1; i >= 0; i--) {
+                RecognizerResult result = recognizerResults.get(i);
+                anonymizedTextBuilder.replace(result.getStart(), result.getEnd(), placeholders[i]);
+            }
+            rewriteOutcome = Outcome.OK;
+            return new AnonymizationResult(anonymizedTextBuilder.toString(), placeholderMappings);
+        } finally {
+            rewriteEvent.end();
+            if (rewriteEvent.shouldCommit()) {
+                rewriteEvent.sessionId = chatId;
+                rewriteEvent.chars = text.length();
+                rewriteEvent.entities = recognizerResults.size();
+                rewriteEvent.placeholders = placeholderMappings.size();
+                rewriteEvent.outcome = rewriteOutcome;
+                rewriteEvent.commit();
+            }
         }
-
-        // The placeholder map needs to be inverted for the final result.
-        // The key should be the placeholder, and the value should be the original text.
-        // The current implementation is already doing this correctly.
-
-        return new AnonymizationResult(anonymizedTextBuilder.toString(), placeholderMappings);
     }
 }
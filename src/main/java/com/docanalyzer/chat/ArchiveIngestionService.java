@@ -0,0 +1,286 @@
+package com.docanalyzer.chat;
+
+import com.docanalyzer.anonymization.AnonymizationService;
+import com.docanalyzer.anonymization.PlaceholderRegistry;
+import com.docanalyzer.document.DocumentStore;
+import com.docanalyzer.extraction.TextExtractionService;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Ingests every document of a ZIP archive into a single chat session.
+ * <p>
+ * Entries are streamed out of the archive one at a time (nothing is unpacked to disk) and
+ * handed to a bounded worker pool that extracts and anonymizes them in parallel. Text
+ * extraction and Presidio calls are further bounded by their own services. All entries share
+ * one {@link PlaceholderRegistry}, so a value gets the same placeholder in every file. The
+ * header naming each file in the combined document uses a placeholder for the file name too,
+ * which answers turn back into the real name like any other placeholder.
+ */
+@ApplicationScoped
+public class ArchiveIngestionService {
+
+    private static final String DOCUMENT_HEADER = "--- Document: %s ---\n\n";
+    // File names often contain personal data, so the LLM only sees a placeholder for them
+    private static final String FILE_NAME_ENTITY = "FILE_NAME";
+
+    // Legacy (Windows) archives encode entry names in CP437; entries flagged as UTF-8 are still read as UTF-8
+    private static final Charset ENTRY_NAME_CHARSET = Charset.forName("IBM437");
+
+    @Inject
+    TextExtractionService extractionService;
+
+    @Inject
+    AnonymizationService anonymizationService;
+
+    @Inject
+    DocumentStore documentStore;
+
+    @Inject
+    ChatService chatService;
+
+    @ConfigProperty(name = "documind.archive.parallelism", defaultValue = "4")
+    int parallelism;
+
+    @ConfigProperty(name = "documind.archive.max-entries", defaultValue = "1000")
+    int maxEntries;
+
+    @ConfigProperty(name = "documind.archive.max-entry-bytes", defaultValue = "52428800")
+    long maxEntryBytes;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "archive-ingest-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Extracts, anonymizes and stores all documents of a ZIP archive as the session's document.
+     * Files that fail are reported and skipped; the others are still ingested.
+     *
+     * @param sessionId The ID of the chat session.
+     * @param archiveStream The ZIP archive content.
+     * @param archiveName The archive file name, for logging.
+     * @return The outcome of every file and the aggregate throughput.
+     * @throws ChatServiceException if the archive itself cannot be read or has too many entries;
+     *         the entries still being ingested are cancelled then.
+     */
+    public ArchiveIngestionResult ingestArchive(String sessionId, InputStream archiveStream, String archiveName) {
+        long start = System.nanoTime();
+        PlaceholderRegistry registry = anonymizationService.newPlaceholderRegistry(sessionId);
+
+        // Bounds the number of entries held in memory while waiting for a worker
+        Semaphore buffered = new Semaphore(parallelism * 2);
+        List<Future<FileOutcome>> outcomes = new ArrayList<>();
+
+        try (ZipInputStream zip = new ZipInputStream(archiveStream, ENTRY_NAME_CHARSET)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory() || isIgnored(name)) {
+                    continue;
+                }
+                if (outcomes.size() >= maxEntries) {
+                    throw new ChatServiceException("Archive " + archiveName + " contains more than " + maxEntries + " files");
+                }
+
+                buffered.acquire();
+                byte[] content = readEntry(zip);
+                if (content == null) {
+                    buffered.release();
+                    outcomes.add(CompletableFuture.completedFuture(FileOutcome.failed(name, 0, 0,
+                            "File exceeds the maximum size of " + maxEntryBytes + " bytes")));
+                    continue;
+                }
+
+                outcomes.add(executor.submit(() -> {
+                    try {
+                        return ingestEntry(sessionId, name, content, registry);
+                    } finally {
+                        buffered.release();
+                    }
+                }));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // ZipException is an IOException; an undecodable entry name is an IllegalArgumentException
+            cancelAll(outcomes);
+            throw new ChatServiceException("Failed to read archive " + archiveName + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            cancelAll(outcomes);
+            Thread.currentThread().interrupt();
+            throw new ChatServiceException("Interrupted while reading archive " + archiveName, e);
+        } catch (RuntimeException e) {
+            cancelAll(outcomes);
+            throw e;
+        }
+
+        List<FileOutcome> completed = new ArrayList<>(outcomes.size());
+        try {
+            for (Future<FileOutcome> future : outcomes) {
+                completed.add(await(future));
+            }
+        } catch (RuntimeException e) {
+            cancelAll(outcomes);
+            throw e;
+        }
+
+        List<FileResult> files = new ArrayList<>(completed.size());
+        StringBuilder combined = new StringBuilder();
+        long totalBytes = 0;
+        int succeeded = 0;
+        for (FileOutcome outcome : completed) {
+            files.add(outcome.result);
+            totalBytes += outcome.result.getBytes();
+            if (outcome.text != null) {
+                succeeded++;
+                if (combined.length() > 0) {
+                    combined.append("\n\n");
+                }
+                String fileName = registry.placeholderFor(FILE_NAME_ENTITY, outcome.result.getFileName());
+                combined.append(String.format(DOCUMENT_HEADER, fileName)).append(outcome.text);
+            }
+        }
+
+        if (succeeded > 0) {
+            anonymizationService.saveMappings(registry, sessionId);
+            documentStore.put(sessionId, combined.toString());
+            chatService.schedulePrecompute(sessionId);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        double seconds = Math.max(elapsedNanos, 1) / 1_000_000_000.0;
+        ArchiveIngestionResult result = new ArchiveIngestionResult(files, succeeded, files.size() - succeeded, totalBytes,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), (totalBytes / (1024.0 * 1024.0)) / seconds, files.size() / seconds);
+        Log.infof("Ingested archive %s for session %s: %d of %d files in %d ms (%.2f MB/s, %.2f files/s)",
+                archiveName, sessionId, succeeded, files.size(), result.getElapsedMillis(),
+                result.getThroughputMegabytesPerSecond(), result.getFilesPerSecond());
+        return result;
+    }
+
+    private FileOutcome ingestEntry(String sessionId, String name, byte[] content, PlaceholderRegistry registry) {
+        long start = System.nanoTime();
+        try {
+            String text = extractionService.extract(sessionId, new ByteArrayInputStream(content), name).getText();
+            String anonymized = anonymizationService.anonymizeDocument(text, sessionId, registry);
+            String documentText = anonymized == null ? "" : anonymized;
+            return new FileOutcome(new FileResult(name, "ok", content.length, documentText.length(), elapsedMillis(start), null), documentText);
+        } catch (Exception e) {
+            Log.errorf(e, "Failed to ingest archive entry %s for session %s", name, sessionId);
+            return FileOutcome.failed(name, content.length, elapsedMillis(start), e.getMessage());
+        }
+    }
+
+    private static void cancelAll(List<Future<FileOutcome>> outcomes) {
+        outcomes.forEach(outcome -> outcome.cancel(true));
+    }
+
+    private FileOutcome await(Future<FileOutcome> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChatServiceException("Interrupted while ingesting archive", e);
+        } catch (ExecutionException e) {
+            throw new ChatServiceException("Failed to ingest archive: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Reads the current entry, or returns null (skipping the rest of it) if it is larger than the limit.
+     */
+    private byte[] readEntry(ZipInputStream zip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = zip.read(buffer)) != -1) {
+            total += read;
+            if (total > maxEntryBytes) {
+                return null;
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isIgnored(String name) {
+        String baseName = name.substring(name.lastIndexOf('/') + 1);
+        return name.startsWith("__MACOSX/") || baseName.startsWith(".");
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static class FileOutcome {
+        private final FileResult result;
+        private final String text; // null if the file failed
+
+        FileOutcome(FileResult result, String text) {
+            this.result = result;
+            this.text = text;
+        }
+
+        static FileOutcome failed(String name, long bytes, long millis, String error) {
+            return new FileOutcome(new FileResult(name, "failed", bytes, 0, millis, error), null);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FileResult {
+        private String fileName;
+        private String status;
+        private long bytes;
+        private int chars;
+        private long elapsedMillis;
+        private String error;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ArchiveIngestionResult {
+        private List<FileResult> files;
+        private int succeeded;
+        private int failed;
+        private long totalBytes;
+        private long elapsedMillis;
+        private double throughputMegabytesPerSecond;
+        private double filesPerSecond;
+    }
+}
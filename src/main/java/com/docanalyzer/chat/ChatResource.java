@@ -1,13 +1,23 @@
 package com.docanalyzer.chat;
 
+import com.docanalyzer.document.CompressedDocument;
+import com.docanalyzer.document.DocumentStore;
+import com.docanalyzer.scheduling.Lane;
+import com.docanalyzer.scheduling.SchedulerBusyException;
+import com.docanalyzer.scheduling.WorkScheduler;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
@@ -18,10 +28,20 @@ import org.jboss.resteasy.reactive.multipart.FileUpload;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 @Path("/api/chat")
@@ -29,6 +49,7 @@ import java.util.concurrent.Executors;
 public class ChatResource {
 
     private static final Logger LOG = Logger.getLogger(ChatResource.class);
+    private static final byte[] HEARTBEAT = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
     private final ExecutorService executorService = Executors.newCachedThreadPool();
     private final ObjectMapper objectMapper = new ObjectMapper(); // For SSE
 
@@ -36,6 +57,44 @@ public class ChatResource {
     @Inject
     ChatService chatService;
 
+    @Inject
+    DocumentStore documentStore;
+
+    @Inject
+    PromptFragmentCache promptCache;
+
+    @Inject
+    ArchiveIngestionService archiveIngestionService;
+
+    @Inject
+    WorkScheduler scheduler;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "documind.sse.heartbeat-interval", defaultValue = "PT2S")
+    Duration heartbeatInterval;
+
+    private ScheduledExecutorService heartbeatScheduler;
+    private Counter cancelledRequests;
+
+    @PostConstruct
+    void init() {
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cancelledRequests = Counter.builder("documind.chat.cancelled")
+                .description("Chat requests cancelled because the client disconnected")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeatScheduler.shutdownNow();
+    }
+
     @POST
     @Path("/new")
     @Produces(MediaType.APPLICATION_JSON)
@@ -75,7 +134,8 @@ public class ChatResource {
         LOG.infof("Received file upload for session %s: %s, type: %s, size: %d",
                 sessionId, fileUpload.fileName(), fileUpload.contentType(), fileUpload.size());
 
-        try (InputStream fileStream = Files.newInputStream(fileUpload.uploadedFile())) {
+        try (WorkScheduler.Slot slot = scheduler.acquire(Lane.BULK, sessionId);
+             InputStream fileStream = Files.newInputStream(fileUpload.uploadedFile())) {
             chatService.ingestDocument(sessionId, fileStream, fileUpload.fileName());
             return Response.ok(Collections.singletonMap("message", "File uploaded and processing started successfully for " + fileUpload.fileName())).build();
         } catch (ChatServiceException e) {
@@ -85,6 +145,12 @@ public class ChatResource {
         } catch (IllegalStateException e) {
             LOG.errorf(e, "Error processing upload for session %s: Session not found or not initialized.", sessionId);
             return Response.status(Response.Status.NOT_FOUND).entity(Collections.singletonMap("error", e.getMessage())).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(Collections.singletonMap("error", "Interrupted while waiting to process the file")).build();
+        } catch (SchedulerBusyException e) {
+            LOG.warnf("Rejected upload for session %s: %s", sessionId, e.getMessage());
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(Collections.singletonMap("error", "The server is busy, please try again later")).build();
         } catch (IOException e) {
             LOG.errorf(e, "Error processing upload for session %s", sessionId);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Collections.singletonMap("error", "Failed to process file: " + e.getMessage())).build();
@@ -94,6 +160,65 @@ public class ChatResource {
         }
     }
 
+    @POST
+    @Path("/{sessionId}/upload-archive")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Upload a ZIP archive", description = "Extracts and anonymizes every document of a ZIP archive in parallel and stores them together as the session's document. Returns the outcome of each file and the aggregate throughput.")
+    public Response uploadArchive(@PathParam("sessionId") String sessionId,
+                                  @RestForm("file") FileUpload fileUpload) {
+        if (sessionId == null || sessionId.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Session ID cannot be empty").build();
+        }
+        if (fileUpload == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("No file uploaded.").build();
+        }
+
+        LOG.infof("Received archive upload for session %s: %s, size: %d", sessionId, fileUpload.fileName(), fileUpload.size());
+
+        try (WorkScheduler.Slot slot = scheduler.acquire(Lane.BULK, sessionId);
+             InputStream archiveStream = Files.newInputStream(fileUpload.uploadedFile())) {
+            return Response.ok(archiveIngestionService.ingestArchive(sessionId, archiveStream, fileUpload.fileName())).build();
+        } catch (ChatServiceException e) {
+            LOG.errorf(e, "A chat service error occurred for session %s: %s", sessionId, e.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST).entity(Collections.singletonMap("error", e.getMessage())).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(Collections.singletonMap("error", "Interrupted while waiting to process the archive")).build();
+        } catch (SchedulerBusyException e) {
+            LOG.warnf("Rejected archive upload for session %s: %s", sessionId, e.getMessage());
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(Collections.singletonMap("error", "The server is busy, please try again later")).build();
+        } catch (IOException e) {
+            LOG.errorf(e, "Error processing archive upload for session %s", sessionId);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Collections.singletonMap("error", "Failed to process archive: " + e.getMessage())).build();
+        } catch (Exception e) {
+            LOG.errorf(e, "Unexpected error during archive upload for session %s", sessionId);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Collections.singletonMap("error", "An unexpected error occurred: " + e.getMessage())).build();
+        }
+    }
+
+    @GET
+    @Path("/{sessionId}/document/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get document memory statistics", description = "Returns the size, compression ratio and estimated heap usage of the session's stored document, including its cached pre-encoded prompt.")
+    public Response getDocumentStats(@PathParam("sessionId") String sessionId) {
+        CompressedDocument document = documentStore.get(sessionId).orElse(null);
+        if (document == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity(Collections.singletonMap("error", "No document for session " + sessionId)).build();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chars", document.length());
+        stats.put("originalBytes", document.originalBytes());
+        stats.put("compressedBytes", document.compressedBytes());
+        stats.put("compressionRatio", document.compressionRatio());
+        stats.put("blocks", document.blockCount());
+        stats.put("retainedBytes", document.retainedBytes());
+        long promptCacheBytes = promptCache.bytes(sessionId);
+        stats.put("promptCacheBytes", promptCacheBytes);
+        stats.put("totalHeapBytes", document.retainedBytes() + promptCacheBytes);
+        return Response.ok(stats).build();
+    }
+
     @POST
     @Path("/{sessionId}/message")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -129,83 +254,306 @@ public class ChatResource {
         LOG.infof("Received message for session %s: %s", sessionId, userMessage.message);
 
         return output -> {
-            try {
-                chatService.streamChatResponse(sessionId, userMessage.message,
+            RequestCancellation cancellation = new RequestCancellation();
+            ScheduledFuture<?> heartbeat = startHeartbeat(output, cancellation, sessionId);
+            try (WorkScheduler.Slot slot = scheduler.acquire(Lane.INTERACTIVE, sessionId, cancellation)) {
+                chatService.streamChatResponse(sessionId, userMessage.message, cancellation,
                     eventMap -> { // eventMap is Map<String, Object>
-                        try {
-                            String eventType = (String) eventMap.getOrDefault("type", "message"); // Default type
-                            String jsonData = objectMapper.writeValueAsString(eventMap.get("data"));
+                        // Map-reduce progress events arrive concurrently from several LLM workers
+                        synchronized (output) {
+                            try {
+                                String eventType = (String) eventMap.getOrDefault("type", "message"); // Default type
+                                String jsonData = objectMapper.writeValueAsString(eventMap.get("data"));
+
+                                // Send specific event type if it's a chart or progress, otherwise default SSE message event
+                                if ("chart".equals(eventType) || "progress".equals(eventType)) {
+                                    output.write(("event: " + eventType + "\n").getBytes());
+                                }
+                                // For tokens, no explicit event name, just data (standard SSE 'message' event)
+                                // output.write("event: token\n".getBytes()); // Could also do this
 
-                            // Send specific event type if it's a chart, otherwise default SSE message event
-                            if ("chart".equals(eventType)) {
-                                output.write("event: chart\n".getBytes());
+                                output.write(("data: " + jsonData + "\n\n").getBytes());
+                                output.flush();
+                            } catch (JsonProcessingException e) {
+                                LOG.errorf(e, "Error serializing event data to JSON for session %s", sessionId);
+                                // Potentially send an error event to client
+                            } catch (IOException e) {
+                                LOG.errorf(e, "IOException while streaming event to client for session %s", sessionId);
+                                clientDisconnected(cancellation, sessionId);
+                                throw new RequestCancelledException();
                             }
-                            // For tokens, no explicit event name, just data (standard SSE 'message' event)
-                            // output.write("event: token\n".getBytes()); // Could also do this
-
-                            output.write(("data: " + jsonData + "\n\n").getBytes());
-                            output.flush();
-                        } catch (JsonProcessingException e) {
-                            LOG.errorf(e, "Error serializing event data to JSON for session %s", sessionId);
-                            // Potentially send an error event to client
-                        } catch (IOException e) {
-                            LOG.errorf(e, "IOException while streaming event to client for session %s", sessionId);
-                            throw new RuntimeException("Client disconnected or stream broken", e);
                         }
                     },
                     onComplete -> {
-                        try {
-                            output.write("event: complete\n".getBytes());
-                            output.write(("data: {\"message\": \"Stream finished\"}\n\n").getBytes());
-                            output.flush();
-                            LOG.infof("Stream completed for session %s", sessionId);
-                        } catch (IOException e) {
-                            LOG.errorf(e, "IOException while sending completion event for session %s", sessionId);
-                        } finally {
+                        synchronized (output) {
+                            // Stop the heartbeat first so it never writes to the closed stream
+                            heartbeat.cancel(false);
                             try {
-                                output.close();
+                                output.write("event: complete\n".getBytes());
+                                output.write(("data: {\"message\": \"Stream finished\"}\n\n").getBytes());
+                                output.flush();
+                                LOG.infof("Stream completed for session %s", sessionId);
                             } catch (IOException e) {
-                                LOG.warnf(e, "Error closing SSE stream for session %s", sessionId);
+                                LOG.errorf(e, "IOException while sending completion event for session %s", sessionId);
+                            } finally {
+                                try {
+                                    output.close();
+                                } catch (IOException e) {
+                                    LOG.warnf(e, "Error closing SSE stream for session %s", sessionId);
+                                }
                             }
                         }
                     },
                     onError -> {
-                        try {
-                            output.write("event: error\n".getBytes());
-                            // Sanitize error message before sending to client
-                            String clientError = "An error occurred during chat processing.";
-                            if (onError instanceof IllegalStateException) {
-                                clientError = onError.getMessage(); // Safe to pass some specific errors
-                            }
-                            output.write(("data: {\"error\": \"" + clientError.replace("\"", "\\\"") + "\"}\n\n").getBytes());
-                            output.flush();
-                            LOG.errorf(onError, "Error event sent to client for session %s", sessionId);
-                        } catch (IOException e) {
-                            LOG.errorf(e, "IOException while sending error event for session %s", sessionId);
-                        } finally {
-                           try {
-                                output.close();
+                        if (cancellation.isCancelled()) {
+                            return; // Nobody is listening any more
+                        }
+                        synchronized (output) {
+                            heartbeat.cancel(false);
+                            try {
+                                output.write("event: error\n".getBytes());
+                                // Sanitize error message before sending to client
+                                String clientError = "An error occurred during chat processing.";
+                                if (onError instanceof IllegalStateException) {
+                                    clientError = onError.getMessage(); // Safe to pass some specific errors
+                                }
+                                output.write(("data: {\"error\": \"" + clientError.replace("\"", "\\\"") + "\"}\n\n").getBytes());
+                                output.flush();
+                                LOG.errorf(onError, "Error event sent to client for session %s", sessionId);
                             } catch (IOException e) {
-                                LOG.warnf(e, "Error closing SSE stream after error for session %s", sessionId);
+                                LOG.errorf(e, "IOException while sending error event for session %s", sessionId);
+                            } finally {
+                                try {
+                                    output.close();
+                                } catch (IOException e) {
+                                    LOG.warnf(e, "Error closing SSE stream after error for session %s", sessionId);
+                                }
                             }
                         }
                     });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warnf("Interrupted while waiting to answer the message for session %s", sessionId);
+            } catch (RequestCancelledException e) {
+                // The client disconnected while waiting for a slot, so there is nobody to answer
+                LOG.infof("Client of session %s disconnected before its message was answered", sessionId);
+            } catch (SchedulerBusyException e) {
+                LOG.warnf("Rejected message for session %s: %s", sessionId, e.getMessage());
+                synchronized (output) {
+                    heartbeat.cancel(false);
+                    try {
+                        output.write("event: error\n".getBytes());
+                        output.write(("data: {\"error\": \"The server is busy, please try again later.\"}\n\n").getBytes());
+                        output.flush();
+                        output.close();
+                    } catch (IOException ex) {
+                        LOG.warnf(ex, "Could not send busy error to client for session %s", sessionId);
+                    }
+                }
             } catch (Exception e) {
                 LOG.errorf(e, "Unhandled exception in StreamingOutput for session %s", sessionId);
-                 try {
-                    output.write("event: error\n".getBytes());
-                    output.write(("data: {\"error\": \"Failed to initiate chat stream.\"}\n\n").getBytes());
-                    output.flush();
-                    output.close();
-                } catch (IOException ex) {
-                    LOG.warnf(ex, "Could not send final error to client for session %s", sessionId);
+                if (cancellation.isCancelled()) {
+                    return;
+                }
+                synchronized (output) {
+                    heartbeat.cancel(false);
+                    try {
+                        output.write("event: error\n".getBytes());
+                        output.write(("data: {\"error\": \"Failed to initiate chat stream.\"}\n\n").getBytes());
+                        output.flush();
+                        output.close();
+                    } catch (IOException ex) {
+                        LOG.warnf(ex, "Could not send final error to client for session %s", sessionId);
+                    }
+                }
+            } finally {
+                heartbeat.cancel(false);
+            }
+        };
+    }
+
+    @POST
+    @Path("/{sessionId}/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @Operation(summary = "Send a batch of questions", description = "Answers a list of questions about the session's document concurrently and streams each answer, tagged with its question ID, as soon as it is ready. Questions without a message or with a duplicate ID reject the batch with 400.")
+    public StreamingOutput sendBatch(@PathParam("sessionId") String sessionId,
+                                     @RequestBody(
+                                          description = "Questions from the user",
+                                          required = true,
+                                          content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                                             schema = @Schema(implementation = BatchRequest.class))
+                                     ) BatchRequest batchRequest) {
+        if (sessionId == null || sessionId.isBlank()) {
+            LOG.error("Session ID is missing for sendBatch.");
+            return output -> {
+                output.write("event: error\n".getBytes());
+                output.write(("data: {\"error\": \"Session ID is missing\"}\n\n").getBytes());
+                output.flush();
+            };
+        }
+        if (batchRequest == null || batchRequest.questions == null || batchRequest.questions.isEmpty()) {
+            LOG.error("Question batch is missing or empty.");
+            return output -> {
+                output.write("event: error\n".getBytes());
+                output.write(("data: {\"error\": \"Question batch is missing or empty\"}\n\n").getBytes());
+                output.flush();
+            };
+        }
+
+        // Question IDs default to the position in the batch. Every question must get exactly one
+        // answer or question-error event, so invalid entries reject the whole batch up front.
+        Map<String, String> questions = new LinkedHashMap<>();
+        for (int i = 0; i < batchRequest.questions.size(); i++) {
+            BatchQuestion question = batchRequest.questions.get(i);
+            String questionId = question == null || question.id == null || question.id.isBlank() ? String.valueOf(i) : question.id;
+            if (question == null || question.message == null || question.message.isBlank()) {
+                throw badRequest("Question " + questionId + " has no message");
+            }
+            if (questions.putIfAbsent(questionId, question.message) != null) {
+                throw badRequest("Duplicate question ID " + questionId);
+            }
+        }
+
+        LOG.infof("Received batch of %d questions for session %s", questions.size(), sessionId);
+
+        return output -> {
+            RequestCancellation cancellation = new RequestCancellation();
+            ScheduledFuture<?> heartbeat = startHeartbeat(output, cancellation, sessionId);
+            try (WorkScheduler.Slot slot = scheduler.acquire(Lane.INTERACTIVE, sessionId, cancellation)) {
+                chatService.streamBatchResponse(sessionId, questions, cancellation,
+                    eventMap -> {
+                        // Answers arrive concurrently from several LLM workers
+                        synchronized (output) {
+                            try {
+                                Map<String, Object> data = new LinkedHashMap<>();
+                                data.put("questionId", eventMap.get("questionId"));
+                                data.put("data", eventMap.get("data"));
+                                output.write(("event: " + eventMap.get("type") + "\n").getBytes());
+                                output.write(("data: " + objectMapper.writeValueAsString(data) + "\n\n").getBytes());
+                                output.flush();
+                            } catch (JsonProcessingException e) {
+                                LOG.errorf(e, "Error serializing batch event to JSON for session %s", sessionId);
+                            } catch (IOException e) {
+                                LOG.errorf(e, "IOException while streaming batch event to client for session %s", sessionId);
+                                clientDisconnected(cancellation, sessionId);
+                                throw new RequestCancelledException();
+                            }
+                        }
+                    },
+                    onComplete -> {
+                        synchronized (output) {
+                            try {
+                                output.write("event: complete\n".getBytes());
+                                output.write(("data: {\"message\": \"Batch finished\"}\n\n").getBytes());
+                                output.flush();
+                                LOG.infof("Batch completed for session %s", sessionId);
+                            } catch (IOException e) {
+                                LOG.errorf(e, "IOException while sending batch completion event for session %s", sessionId);
+                            }
+                        }
+                    },
+                    onError -> {
+                        if (cancellation.isCancelled()) {
+                            return;
+                        }
+                        synchronized (output) {
+                            try {
+                                output.write("event: error\n".getBytes());
+                                String clientError = "An error occurred during batch processing.";
+                                if (onError instanceof IllegalStateException) {
+                                    clientError = onError.getMessage();
+                                }
+                                output.write(("data: {\"error\": \"" + clientError.replace("\"", "\\\"") + "\"}\n\n").getBytes());
+                                output.flush();
+                                LOG.errorf(onError, "Error event sent to client for session %s", sessionId);
+                            } catch (IOException e) {
+                                LOG.errorf(e, "IOException while sending batch error event for session %s", sessionId);
+                            }
+                        }
+                    });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warnf("Interrupted while waiting to answer the batch for session %s", sessionId);
+            } catch (RequestCancelledException e) {
+                // The client disconnected while waiting for a slot, so there is nobody to answer
+                LOG.infof("Client of session %s disconnected before its batch was answered", sessionId);
+            } catch (SchedulerBusyException e) {
+                LOG.warnf("Rejected batch for session %s: %s", sessionId, e.getMessage());
+                synchronized (output) {
+                    try {
+                        output.write("event: error\n".getBytes());
+                        output.write(("data: {\"error\": \"The server is busy, please try again later.\"}\n\n").getBytes());
+                        output.flush();
+                    } catch (IOException ex) {
+                        LOG.warnf(ex, "Could not send busy error to client for session %s", sessionId);
+                    }
                 }
+            } catch (Exception e) {
+                LOG.errorf(e, "Unhandled exception in batch StreamingOutput for session %s", sessionId);
+            } finally {
+                heartbeat.cancel(false);
             }
         };
     }
 
+    private static BadRequestException badRequest(String error) {
+        LOG.errorf("Rejected question batch: %s", error);
+        return new BadRequestException(Response.status(Response.Status.BAD_REQUEST)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(Collections.singletonMap("error", error))
+                .build());
+    }
+
+    /**
+     * Periodically writes an SSE comment line so that a client that has gone away is noticed
+     * while the LLM is still working, not only when the answer is finally written.
+     * <p>
+     * Callers that close the stream must cancel the returned future while holding the lock on
+     * {@code output}; a beat already waiting for the lock then sees the cancellation and skips
+     * its write instead of mistaking the closed stream for a disconnected client.
+     */
+    private ScheduledFuture<?> startHeartbeat(OutputStream output, RequestCancellation cancellation, String sessionId) {
+        long interval = heartbeatInterval.toMillis();
+        AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+        self.set(heartbeatScheduler.scheduleWithFixedDelay(() -> {
+            if (cancellation.isCancelled()) {
+                return;
+            }
+            synchronized (output) {
+                ScheduledFuture<?> beat = self.get();
+                if (beat == null || beat.isCancelled()) {
+                    return;
+                }
+                try {
+                    output.write(HEARTBEAT);
+                    output.flush();
+                } catch (IOException e) {
+                    clientDisconnected(cancellation, sessionId);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS));
+        return self.get();
+    }
+
+    private void clientDisconnected(RequestCancellation cancellation, String sessionId) {
+        if (cancellation.cancel()) {
+            LOG.infof("Client of session %s disconnected, cancelling its pending LLM calls", sessionId);
+            cancelledRequests.increment();
+        }
+    }
+
     // Simple DTO for user messages
     public static class UserMessage {
         public String message;
     }
+
+    public static class BatchRequest {
+        public List<BatchQuestion> questions;
+    }
+
+    public static class BatchQuestion {
+        public String id;
+        public String message;
+    }
 }
@@ -1,26 +1,41 @@
 package com.docanalyzer.chat;
 
 import com.docanalyzer.anonymization.AnonymizationService;
+import com.docanalyzer.document.CompressedDocument;
+import com.docanalyzer.document.DocumentStore;
+import com.docanalyzer.extraction.TextExtractionService;
 import com.docanalyzer.huggingface.HuggingFaceClient;
-import com.docanalyzer.huggingface.HuggingFaceRequest;
+import com.docanalyzer.huggingface.PromptFragment;
+import com.docanalyzer.huggingface.PromptRequest;
 import com.docanalyzer.huggingface.HuggingFaceResponse;
-import com.docanalyzer.huggingface.Message;
+import com.docanalyzer.jfr.LlmCallEvent;
+import com.docanalyzer.jfr.Outcome;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
-import org.apache.tika.Tika;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @ApplicationScoped
 public class ChatService {
@@ -30,9 +45,37 @@ public class ChatService {
             " Focus on identifying key information." +
             " Do not mention that you are an AI. Response in markdown format. If you don't know the answer, say so.";
 
+    private static final String USER_QUERY_PREFIX = "\n\n" + "The User query is the following: ";
+
+    private static final String NO_RELEVANT_INFORMATION = "NO RELEVANT INFORMATION";
+
+    private static final String COMBINE_INSTRUCTION = " Combine these notes into shorter notes that keep every detail" +
+            " relevant to the query. If none of them is relevant, answer exactly: " + NO_RELEVANT_INFORMATION;
+
+    private static final String REDUCE_INSTRUCTION = " Combine the notes into a single answer.";
+
+    private static final String MAP_INSTRUCTION = "\n\n" + "This is only a part of the document: extract the information" +
+            " from this part that is relevant to the query. If this part contains nothing relevant, answer exactly: " +
+            NO_RELEVANT_INFORMATION;
+
     @Inject
     AnonymizationService anonymizationService;
 
+    @Inject
+    DocumentStore documentStore;
+
+    @Inject
+    TextExtractionService extractionService;
+
+    @Inject
+    PrecomputeService precomputeService;
+
+    @Inject
+    LlmRequestCoalescer coalescer;
+
+    @Inject
+    PromptFragmentCache promptCache;
+
     @Inject
     @RestClient
     HuggingFaceClient huggingFaceClient;
@@ -43,34 +86,124 @@ public class ChatService {
     @ConfigProperty(name = "huggingface.api.model")
     String model;
 
-    private final Map<String, String> documents = new ConcurrentHashMap<>();
+    @ConfigProperty(name = "documind.chat.parallelism", defaultValue = "8")
+    int parallelism;
+
+    @ConfigProperty(name = "documind.precompute.parallelism", defaultValue = "2")
+    int precomputeParallelism;
+
+    @ConfigProperty(name = "documind.chat.map-reduce.enabled", defaultValue = "true")
+    boolean mapReduceEnabled;
+
+    @ConfigProperty(name = "documind.chat.map-reduce.segment-chars", defaultValue = "24000")
+    int segmentChars;
+
+    private ExecutorService llmExecutor;
+    // Shares llmExecutor between the requests fanning out to it
+    private FairShareExecutor llmCalls;
+    // Pre-computation fans out on its own low-priority pool, never ahead of live calls
+    private ExecutorService precomputeExecutor;
+    private FairShareExecutor precomputeCalls;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        llmExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "llm-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        llmCalls = new FairShareExecutor(llmExecutor, parallelism);
+
+        AtomicInteger precomputeThreadCount = new AtomicInteger();
+        precomputeExecutor = Executors.newFixedThreadPool(precomputeParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "llm-precompute-" + precomputeThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        precomputeCalls = new FairShareExecutor(precomputeExecutor, precomputeParallelism);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        llmExecutor.shutdownNow();
+        precomputeExecutor.shutdownNow();
+    }
 
     public String createNewChatSession() {
         return UUID.randomUUID().toString();
     }
 
     public void clearChatSession(String sessionId) {
-        documents.remove(sessionId);
+        documentStore.remove(sessionId);
+        promptCache.remove(sessionId);
+        precomputeService.clear(sessionId);
         anonymizationService.clearMappingsForSession(sessionId);
         Log.infof("Cleared chat session: %s", sessionId);
     }
 
     public void ingestDocument(String sessionId, InputStream documentStream, String fileName) throws IOException {
         try {
-            Tika tika = new Tika();
-            String text = tika.parseToString(documentStream);
+            String text = extractionService.extract(sessionId, documentStream, fileName).getText();
             String anonymizedContent = anonymizationService.anonymizeDocument(text, sessionId);
-            documents.put(sessionId, anonymizedContent);
+            documentStore.put(sessionId, anonymizedContent);
         } catch (Exception e) {
             Log.errorf(e, "Error during document ingestion for session %s, file %s", sessionId, fileName);
             throw new ChatServiceException("Failed to ingest document: " + e.getMessage(), e);
         }
+        schedulePrecompute(sessionId);
+    }
+
+    /**
+     * Starts the speculative pre-computation of the standard prompts for the session's current document.
+     */
+    void schedulePrecompute(String sessionId) {
+        precomputeService.schedule(sessionId, (prompt, cancellation) -> precompute(sessionId, prompt, cancellation));
+    }
+
+    /**
+     * Computes the raw answer to a standard prompt. Large documents go through map-reduce like a
+     * live question would, but on the small pre-computation pool, so their segment calls never
+     * queue ahead of live ones; the cancellation aborts all of its calls when live traffic rises.
+     */
+    private String precompute(String sessionId, String prompt, RequestCancellation cancellation) {
+        CompressedDocument document = documentStore.get(sessionId).orElse(null);
+        if (document == null) {
+            return null;
+        }
+        if (needsMapReduce(document)) {
+            return mapReduce(sessionId, document, prompt, precomputeCalls, cancellation, (completed, total) -> { });
+        }
+        return callLlm(sessionId, questionRequest(sessionId, document, prompt), cancellation);
     }
 
     public void streamChatResponse(String sessionId, String userMessage,
                                    Consumer<Map<String, Object>> eventConsumer,
                                    Consumer<String> onComplete, Consumer<Throwable> onError) {
-        String document = documents.get(sessionId);
+        streamChatResponse(sessionId, userMessage, RequestCancellation.none(), eventConsumer, onComplete, onError);
+    }
+
+    /**
+     * Answers a question about the session's document.
+     *
+     * @param cancellation Cancelled when the client disconnects; pending LLM calls made for the
+     *                     request are then aborted and nothing more is emitted.
+     */
+    public void streamChatResponse(String sessionId, String userMessage, RequestCancellation cancellation,
+                                   Consumer<Map<String, Object>> eventConsumer,
+                                   Consumer<String> onComplete, Consumer<Throwable> onError) {
+        precomputeService.liveRequestStarted();
+        try {
+            respond(sessionId, userMessage, cancellation, eventConsumer, onError);
+        } finally {
+            precomputeService.liveRequestFinished();
+        }
+    }
+
+    private void respond(String sessionId, String userMessage, RequestCancellation cancellation,
+                         Consumer<Map<String, Object>> eventConsumer, Consumer<Throwable> onError) {
+        CompressedDocument document = documentStore.get(sessionId).orElse(null);
 
         if (document == null) {
             Log.errorf("Chat session not found or document not processed: %s", sessionId);
@@ -78,25 +211,488 @@ public class ChatService {
             return;
         }
 
-        try {
-            String prompt = SYSTEM_MESSAGE_PROMPT +
-                            " The document to analyze is the following: " + document +
-                            "\n\n" + "The User query is the following: " + userMessage;
-            Message message = new Message("user", prompt);
-            HuggingFaceRequest request = new HuggingFaceRequest(Collections.singletonList(message), model, false);
+        Optional<String> precomputed = precomputeService.findAnswer(sessionId, userMessage);
+        if (precomputed.isPresent()) {
+            Log.infof("Answering from pre-computed answer for session %s", sessionId);
+            try {
+                sendTextToken(eventConsumer, anonymizationService.deanonymizeResponse(precomputed.get(), sessionId));
+            } catch (Exception e) {
+                Log.errorf(e, "Failed to process chat message for session %s", sessionId);
+                onError.accept(e);
+            }
+            return;
+        }
 
-            HuggingFaceResponse response = huggingFaceClient.createChatCompletion(request, "Bearer " + apiToken);
+        if (needsMapReduce(document)) {
+            streamMapReduceResponse(sessionId, document, userMessage, cancellation, eventConsumer, onError);
+            return;
+        }
 
-            String responseContent = response.getChoices().get(0).getMessage().getContent();
-            String deAnonymizedToken = anonymizationService.deanonymizeResponse(responseContent, sessionId);
+        try {
+            String deAnonymizedToken = complete(sessionId, questionRequest(sessionId, document, userMessage), cancellation);
 
             sendTextToken(eventConsumer, deAnonymizedToken);
+        } catch (RequestCancelledException e) {
+            Log.infof("Chat request for session %s cancelled by the client", sessionId);
         } catch (Exception e) {
             Log.errorf(e, "Failed to process chat message for session %s", sessionId);
             onError.accept(e);
         }
     }
 
+    /**
+     * Answers several questions about the session's document concurrently.
+     * The pre-encoded document part of the prompt is shared by all questions; at most
+     * {@code documind.chat.parallelism} LLM calls run at the same time across all requests, and a
+     * batch only uses its fair share of them while other requests are answered.
+     * Each answer is de-anonymized and emitted as soon as it is available, tagged with its question ID.
+     *
+     * @param sessionId The ID of the chat session.
+     * @param questions The questions to answer, keyed by question ID.
+     * @param eventConsumer Receives one "answer" or "question-error" event per question. Must be thread-safe.
+     * @param onComplete Called once all questions have been answered.
+     * @param onError Called if the batch cannot be processed.
+     */
+    public void streamBatchResponse(String sessionId, Map<String, String> questions,
+                                    Consumer<Map<String, Object>> eventConsumer,
+                                    Consumer<String> onComplete, Consumer<Throwable> onError) {
+        streamBatchResponse(sessionId, questions, RequestCancellation.none(), eventConsumer, onComplete, onError);
+    }
+
+    /**
+     * Same as {@link #streamBatchResponse(String, Map, Consumer, Consumer, Consumer)}, stopping all
+     * questions that are still pending when the cancellation is triggered.
+     */
+    public void streamBatchResponse(String sessionId, Map<String, String> questions, RequestCancellation cancellation,
+                                    Consumer<Map<String, Object>> eventConsumer,
+                                    Consumer<String> onComplete, Consumer<Throwable> onError) {
+        precomputeService.liveRequestStarted();
+        try {
+            respondToBatch(sessionId, questions, cancellation, eventConsumer, onComplete, onError);
+        } finally {
+            precomputeService.liveRequestFinished();
+        }
+    }
+
+    private void respondToBatch(String sessionId, Map<String, String> questions, RequestCancellation cancellation,
+                                Consumer<Map<String, Object>> eventConsumer,
+                                Consumer<String> onComplete, Consumer<Throwable> onError) {
+        CompressedDocument document = documentStore.get(sessionId).orElse(null);
+
+        if (document == null) {
+            Log.errorf("Chat session not found or document not processed: %s", sessionId);
+            onError.accept(new IllegalStateException("Chat session not initialized or document not processed."));
+            return;
+        }
+
+        try {
+            if (needsMapReduce(document)) {
+                answerWithMapReduce(sessionId, document, questions, cancellation, eventConsumer);
+            } else {
+                answerConcurrently(sessionId, document, questions, cancellation, eventConsumer);
+            }
+            cancellation.throwIfCancelled();
+            onComplete.accept(sessionId);
+        } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                Log.infof("Question batch for session %s cancelled by the client", sessionId);
+                return;
+            }
+            Log.errorf(e, "Failed to process question batch for session %s", sessionId);
+            onError.accept(e);
+        }
+    }
+
+    private void answerConcurrently(String sessionId, CompressedDocument document, Map<String, String> questions,
+                                    RequestCancellation cancellation, Consumer<Map<String, Object>> eventConsumer) {
+        PromptFragment sharedPrompt = documentFragment(sessionId, document);
+        List<Supplier<Void>> calls = new ArrayList<>(questions.size());
+        questions.forEach((questionId, question) -> calls.add(() -> {
+            String answer;
+            try {
+                answer = complete(sessionId, new PromptRequest(model, sharedPrompt, USER_QUERY_PREFIX + question), cancellation);
+            } catch (RequestCancelledException e) {
+                return null;
+            } catch (Exception e) {
+                Log.errorf(e, "Failed to answer question %s for session %s", questionId, sessionId);
+                sendQuestionEvent(eventConsumer, "question-error", questionId, "Failed to answer the question.");
+                return null;
+            }
+            sendQuestionEvent(eventConsumer, "answer", questionId, answer);
+            return null;
+        }));
+        CompletableFuture.allOf(llmCalls.submitAll(calls).toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * Answers the questions of a batch about a document too large for a single prompt. Each
+     * question already fans out over the request's share of the LLM pool, so the questions are
+     * answered one after the other; this also keeps the map-reduce coordination off the pool's
+     * own threads.
+     */
+    private void answerWithMapReduce(String sessionId, CompressedDocument document, Map<String, String> questions,
+                                     RequestCancellation cancellation, Consumer<Map<String, Object>> eventConsumer) {
+        Log.infof("Answering %d questions with map-reduce for session %s", questions.size(), sessionId);
+        for (Map.Entry<String, String> question : questions.entrySet()) {
+            String answer;
+            try {
+                answer = anonymizationService.deanonymizeResponse(
+                        mapReduce(sessionId, document, question.getValue(), llmCalls, cancellation, (completed, total) -> { }),
+                        sessionId);
+            } catch (Exception e) {
+                if (unwrap(e) instanceof RequestCancelledException) {
+                    return;
+                }
+                Log.errorf(e, "Failed to answer question %s for session %s", question.getKey(), sessionId);
+                sendQuestionEvent(eventConsumer, "question-error", question.getKey(), "Failed to answer the question.");
+                continue;
+            }
+            sendQuestionEvent(eventConsumer, "answer", question.getKey(), answer);
+        }
+    }
+
+    /**
+     * Answers a question about a document too large for a single prompt with map-reduce.
+     * A "progress" event is emitted each time a segment has been processed.
+     */
+    private void streamMapReduceResponse(String sessionId, CompressedDocument document, String userMessage,
+                                         RequestCancellation cancellation,
+                                         Consumer<Map<String, Object>> eventConsumer, Consumer<Throwable> onError) {
+        try {
+            String answer = mapReduce(sessionId, document, userMessage, llmCalls, cancellation,
+                    (completed, total) -> sendProgress(eventConsumer, completed, total));
+            cancellation.throwIfCancelled();
+            sendTextToken(eventConsumer, anonymizationService.deanonymizeResponse(answer, sessionId));
+        } catch (Exception e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RequestCancelledException) {
+                Log.infof("Map-reduce chat request for session %s cancelled by the client", sessionId);
+                return;
+            }
+            Log.errorf(e, "Failed to process map-reduce chat message for session %s", sessionId);
+            onError.accept(cause);
+        }
+    }
+
+    private boolean needsMapReduce(CompressedDocument document) {
+        return mapReduceEnabled && document.length() > segmentChars;
+    }
+
+    /**
+     * Answers a question about a document too large for a single prompt and returns the raw
+     * (still anonymized) answer. The document is split into context-sized segments and each
+     * segment is queried in parallel, within the request's share of the LLM pool (map); the
+     * partial answers are then combined (reduce). If one call fails, the calls still pending are
+     * cancelled. The segment prompts are cached with the session, so only the question is
+     * encoded for each call.
+     *
+     * @param calls The pool the calls run on.
+     * @param onProgress Called with the number of processed segments and the total after each segment.
+     */
+    private String mapReduce(String sessionId, CompressedDocument document, String question, FairShareExecutor calls,
+                             RequestCancellation cancellation, BiConsumer<Integer, Integer> onProgress) {
+        List<PromptFragment> segments = promptCache.segments(sessionId, document, () -> segmentPrompts(document));
+        Log.infof("Answering with map-reduce over %d segments for session %s", segments.size(), sessionId);
+
+        int total = segments.size();
+        String suffix = USER_QUERY_PREFIX + question + MAP_INSTRUCTION;
+        List<PromptRequest> requests = new ArrayList<>(total);
+        for (PromptFragment segment : segments) {
+            requests.add(new PromptRequest(model, segment, suffix));
+        }
+
+        AtomicInteger completed = new AtomicInteger();
+        List<String> partials = callAll(sessionId, requests, calls, cancellation,
+                () -> onProgress.accept(completed.incrementAndGet(), total));
+
+        List<String> notes = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            String partial = partials.get(i);
+            if (isRelevant(partial)) {
+                notes.add("Part " + (i + 1) + ": " + partial);
+            }
+        }
+        return reduce(sessionId, notes, question, calls, cancellation);
+    }
+
+    /**
+     * Combines the notes into the final answer. Notes that do not fit into one segment together
+     * are first combined in batches, level by level, until they do. Each note is capped at half a
+     * segment, so every batch combines at least two notes and each level shrinks the list.
+     */
+    private String reduce(String sessionId, List<String> notes, String question, FairShareExecutor calls,
+                          RequestCancellation cancellation) {
+        List<String> current = notes;
+        while (true) {
+            List<List<String>> groups = groupNotes(current, segmentChars);
+            if (groups.size() <= 1) {
+                String prompt = reducePrompt(groups.isEmpty() ? List.of() : groups.get(0), question, REDUCE_INSTRUCTION);
+                return callLlm(sessionId, PromptRequest.of(model, prompt), cancellation);
+            }
+
+            Log.debugf("Combining %d notes in %d batches for session %s", current.size(), groups.size(), sessionId);
+            List<PromptRequest> requests = new ArrayList<>(groups.size());
+            for (List<String> group : groups) {
+                requests.add(PromptRequest.of(model, reducePrompt(group, question, COMBINE_INSTRUCTION)));
+            }
+            List<String> combined = callAll(sessionId, requests, calls, cancellation, () -> { });
+            current = new ArrayList<>(combined.size());
+            for (int i = 0; i < combined.size(); i++) {
+                String note = combined.get(i);
+                if (isRelevant(note)) {
+                    current.add("Notes " + (i + 1) + ": " + note);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether a partial answer or note carries content. Only answers that start with the
+     * marker are dropped, since a note that mentions it in passing may still hold information.
+     */
+    static boolean isRelevant(String note) {
+        if (note == null) {
+            return false;
+        }
+        String answer = note.strip();
+        return !answer.regionMatches(true, 0, NO_RELEVANT_INFORMATION, 0, NO_RELEVANT_INFORMATION.length());
+    }
+
+    private String reducePrompt(List<String> notes, String question, String instruction) {
+        StringBuilder prompt = new StringBuilder(SYSTEM_MESSAGE_PROMPT)
+                .append(" The document was analyzed in parts. The notes taken from the parts are the following:");
+        for (String note : notes) {
+            prompt.append("\n\n").append(note);
+        }
+        return prompt.append(USER_QUERY_PREFIX).append(question).append(instruction).toString();
+    }
+
+    /**
+     * Groups the notes, in order, into batches of at most maxChars characters, truncating each
+     * note to half of that.
+     */
+    static List<List<String>> groupNotes(List<String> notes, int maxChars) {
+        int maxNoteChars = Math.max(maxChars / 2, 1);
+        List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        int size = 0;
+        for (String note : notes) {
+            String capped = note;
+            if (capped.length() > maxNoteChars) {
+                int end = Character.isHighSurrogate(capped.charAt(maxNoteChars - 1)) ? maxNoteChars - 1 : maxNoteChars;
+                capped = capped.substring(0, end);
+            }
+            if (!group.isEmpty() && size + capped.length() > maxChars) {
+                groups.add(group);
+                group = new ArrayList<>();
+                size = 0;
+            }
+            group.add(capped);
+            size += capped.length();
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Sends the requests in parallel, within the request's share of the given pool, and returns
+     * the raw answers in order. The first failure cancels the calls that are still pending or
+     * running and is rethrown.
+     */
+    private List<String> callAll(String sessionId, List<PromptRequest> requests, FairShareExecutor pool,
+                                 RequestCancellation cancellation, Runnable onEach) {
+        RequestCancellation siblings = new RequestCancellation();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Supplier<String>> suppliers = new ArrayList<>(requests.size());
+        for (PromptRequest request : requests) {
+            suppliers.add(() -> {
+                String answer = callLlm(sessionId, request, siblings);
+                onEach.run();
+                return answer;
+            });
+        }
+        List<CompletableFuture<String>> calls;
+        try (RequestCancellation.Registration ignored = cancellation.onCancel(siblings::cancel)) {
+            calls = pool.submitAll(suppliers);
+            for (CompletableFuture<String> call : calls) {
+                call.whenComplete((answer, error) -> {
+                    if (error != null && failure.compareAndSet(null, unwrap(error))) {
+                        siblings.cancel();
+                    }
+                });
+            }
+            // Wait until every call has finished or been cancelled
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).handle((result, error) -> null).join();
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error != null) {
+            throw new CompletionException(error);
+        }
+        List<String> answers = new ArrayList<>(calls.size());
+        calls.forEach(call -> answers.add(call.join()));
+        return answers;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Splits the text into segments of at most maxChars characters, preferring to cut at a
+     * paragraph break, then at whitespace, in the last tenth of each segment.
+     */
+    static List<String> splitIntoSegments(CharSequence text, int maxChars) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(start + maxChars, text.length());
+            if (end < text.length()) {
+                int cut = lastBreak(text, start + maxChars * 9 / 10, end);
+                if (cut > start) {
+                    end = cut;
+                } else if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                    end--;
+                }
+            }
+            segments.add(text.subSequence(start, end).toString());
+            start = end;
+        }
+        return segments;
+    }
+
+    private static int lastBreak(CharSequence text, int from, int to) {
+        int whitespace = -1;
+        for (int i = to - 1; i >= from; i--) {
+            char c = text.charAt(i);
+            if (c == '\n' && i > 0 && text.charAt(i - 1) == '\n') {
+                return i + 1;
+            }
+            if (whitespace < 0 && Character.isWhitespace(c)) {
+                whitespace = i + 1;
+            }
+        }
+        return whitespace;
+    }
+
+    /**
+     * Builds the request for a question about the session's document: the cached, pre-encoded
+     * document prompt followed by the question, which is the only part encoded per message.
+     */
+    private PromptRequest questionRequest(String sessionId, CompressedDocument document, String question) {
+        return new PromptRequest(model, documentFragment(sessionId, document), USER_QUERY_PREFIX + question);
+    }
+
+    private PromptFragment documentFragment(String sessionId, CompressedDocument document) {
+        return promptCache.get(sessionId, document, () -> documentPrompt(document));
+    }
+
+    /**
+     * Splits the document into context-sized segments and builds the prompt of each: the system
+     * prompt and the position of the segment, followed by the segment itself.
+     */
+    private List<String> segmentPrompts(CompressedDocument document) {
+        StringBuilder text = new StringBuilder(document.length());
+        documentStore.appendTo(document, text);
+        List<String> segments = splitIntoSegments(text, segmentChars);
+
+        int total = segments.size();
+        List<String> prompts = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            prompts.add(SYSTEM_MESSAGE_PROMPT +
+                    String.format(" The following is part %d of %d of the document: ", i + 1, total) + segments.get(i));
+        }
+        return prompts;
+    }
+
+    /**
+     * Builds the system prompt followed by the document, decompressing the document block by
+     * block straight into the builder to avoid an intermediate copy.
+     */
+    private String documentPrompt(CompressedDocument document) {
+        StringBuilder prompt = new StringBuilder(SYSTEM_MESSAGE_PROMPT.length() + document.length() + 64);
+        prompt.append(SYSTEM_MESSAGE_PROMPT).append(" The document to analyze is the following: ");
+        documentStore.appendTo(document, prompt);
+        return prompt.toString();
+    }
+
+    /**
+     * Sends the prompt to the LLM and returns the de-anonymized answer.
+     */
+    private String complete(String sessionId, PromptRequest request, RequestCancellation cancellation) {
+        String answer = callLlm(sessionId, request, cancellation);
+        cancellation.throwIfCancelled();
+        return anonymizationService.deanonymizeResponse(answer, sessionId);
+    }
+
+    /**
+     * Sends the prompt to the LLM and returns the raw (still anonymized) answer.
+     * Identical prompts already in flight are coalesced into a single call.
+     *
+     * @throws RequestCancelledException if the request is cancelled before the answer arrives.
+     */
+    private String callLlm(String sessionId, PromptRequest request, RequestCancellation cancellation) {
+        return coalescer.execute(request, cancellation, () -> invokeLlm(sessionId, request));
+    }
+
+    /**
+     * Starts the LLM call without blocking; cancelling the returned future aborts the HTTP request.
+     * The JFR event is committed however the call ends.
+     */
+    private CompletableFuture<String> invokeLlm(String sessionId, PromptRequest request) {
+        LlmCallEvent event = new LlmCallEvent();
+        event.begin();
+
+        return huggingFaceClient.createChatCompletionAsync(request, "Bearer " + apiToken)
+                .onTermination().invoke((response, failure, cancelled) -> {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.sessionId = sessionId;
+                        event.model = model;
+                        event.promptChars = request.promptChars();
+                        event.outcome = cancelled ? Outcome.CANCELLED : failure != null ? Outcome.FAILED : Outcome.OK;
+                        if (response != null) {
+                            String content = content(response);
+                            event.responseChars = content == null ? 0 : content.length();
+                            if (response.getUsage() != null) {
+                                event.promptTokens = response.getUsage().getPromptTokens();
+                                event.completionTokens = response.getUsage().getCompletionTokens();
+                            }
+                        }
+                        event.commit();
+                    }
+                })
+                .map(ChatService::content)
+                .subscribeAsCompletionStage();
+    }
+
+    private static String content(HuggingFaceResponse response) {
+        return response.getChoices().get(0).getMessage().getContent();
+    }
+
+    private void sendProgress(Consumer<Map<String, Object>> eventConsumer, int completed, int total) {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("completed", completed);
+        progress.put("total", total);
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "progress");
+        event.put("data", progress);
+        eventConsumer.accept(event);
+    }
+
+    private void sendQuestionEvent(Consumer<Map<String, Object>> eventConsumer, String type, String questionId, String text) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", type);
+        event.put("questionId", questionId);
+        event.put("data", text);
+        eventConsumer.accept(event);
+    }
+
     private void sendTextToken(Consumer<Map<String, Object>> eventConsumer, String text) {
         if (text == null || text.isEmpty()) return;
         Map<String, Object> textEvent = new HashMap<>();
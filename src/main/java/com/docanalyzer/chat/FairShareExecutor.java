@@ -0,0 +1,135 @@
+package com.docanalyzer.chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the LLM calls that requests fan out to (one per batch question or map-reduce segment)
+ * on a shared pool without letting one request take all of it.
+ * <p>
+ * The calls of a request are not queued on the pool all at once: each request keeps at most
+ * its share of the pool's threads busy, {@code parallelism / active requests}, and submits its
+ * next call when one of its own finishes. A request arriving while a large fan-out is running
+ * therefore gets threads as soon as the running calls finish, instead of waiting behind every
+ * queued call of the other request.
+ */
+class FairShareExecutor {
+
+    private final Executor pool;
+    private final int parallelism;
+    private final AtomicInteger activeGroups = new AtomicInteger();
+
+    FairShareExecutor(Executor pool, int parallelism) {
+        this.pool = pool;
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Runs the calls of one request, at most its fair share of them at a time.
+     *
+     * @param calls The calls, started in order.
+     * @return The results, in the order of the calls. Cancelling one skips the call if it has not started.
+     */
+    <T> List<CompletableFuture<T>> submitAll(List<Supplier<T>> calls) {
+        Group<T> group = new Group<>(calls);
+        if (!calls.isEmpty()) {
+            activeGroups.incrementAndGet();
+            group.pump();
+        }
+        return group.results;
+    }
+
+    int activeGroups() {
+        return activeGroups.get();
+    }
+
+    private int share() {
+        return Math.max(1, parallelism / Math.max(1, activeGroups.get()));
+    }
+
+    private final class Group<T> {
+        private final ArrayDeque<Call<T>> pending = new ArrayDeque<>();
+        private final List<CompletableFuture<T>> results;
+        private int inFlight;
+        private int remaining;
+
+        Group(List<Supplier<T>> calls) {
+            results = new ArrayList<>(calls.size());
+            for (Supplier<T> call : calls) {
+                CompletableFuture<T> result = new CompletableFuture<>();
+                results.add(result);
+                pending.add(new Call<>(call, result));
+            }
+            remaining = calls.size();
+        }
+
+        /**
+         * Starts pending calls until the group uses its share of the pool.
+         */
+        void pump() {
+            List<Call<T>> toStart = new ArrayList<>();
+            synchronized (this) {
+                while (inFlight < share() && !pending.isEmpty()) {
+                    Call<T> call = pending.poll();
+                    if (call.result.isDone()) {
+                        finished(); // Cancelled before it started
+                        continue;
+                    }
+                    inFlight++;
+                    toStart.add(call);
+                }
+            }
+            toStart.forEach(this::start);
+        }
+
+        private void start(Call<T> call) {
+            try {
+                pool.execute(() -> {
+                    try {
+                        if (!call.result.isDone()) {
+                            call.result.complete(call.supplier.get());
+                        }
+                    } catch (Throwable e) {
+                        call.result.completeExceptionally(e);
+                    } finally {
+                        callFinished();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                call.result.completeExceptionally(e);
+                callFinished();
+            }
+        }
+
+        private void callFinished() {
+            synchronized (this) {
+                inFlight--;
+                finished();
+            }
+            pump();
+        }
+
+        // Guarded by this
+        private void finished() {
+            if (--remaining == 0) {
+                activeGroups.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Call<T> {
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> result;
+
+        Call(Supplier<T> supplier, CompletableFuture<T> result) {
+            this.supplier = supplier;
+            this.result = result;
+        }
+    }
+}
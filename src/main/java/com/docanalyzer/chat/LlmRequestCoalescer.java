@@ -0,0 +1,225 @@
+package com.docanalyzer.chat;
+
+import com.docanalyzer.huggingface.PromptRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical in-flight LLM requests (single flight) and cancels upstream calls nobody
+ * is waiting for any more.
+ * <p>
+ * Requests are keyed by a digest of the model and the anonymized prompt. The digest of the
+ * pre-encoded document part of the prompt is computed once, so only the question is hashed per
+ * request. While a call for a key is running, further requests with the same key wait for it
+ * and receive the same raw answer instead of starting their own call. Because the answer only
+ * contains placeholders, it is valid for every caller; each caller de-anonymizes it with its own
+ * session's mappings.
+ * <p>
+ * A cancelled caller stops waiting immediately. The upstream call is aborted once every caller
+ * attached to it has been cancelled. Only calls cancelled before they were sent count as saved
+ * prompt tokens; a call aborted in flight has had its prompt consumed already, and since requests
+ * neither stream nor set {@code max_tokens}, the completion tokens it saves cannot be estimated.
+ */
+@ApplicationScoped
+public class LlmRequestCoalescer {
+
+    // Rough characters-per-token ratio used to estimate the prompt tokens of a call that was never sent
+    private static final int CHARS_PER_TOKEN = 4;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private Counter coalesced;
+    private Counter cancelled;
+    private Counter abortedInFlight;
+    private Counter unsentPromptTokens;
+
+    @PostConstruct
+    void init() {
+        coalesced = Counter.builder("documind.llm.coalesced")
+                .description("LLM requests served by attaching to an identical in-flight request")
+                .register(registry);
+        cancelled = Counter.builder("documind.llm.cancelled")
+                .description("LLM calls aborted or never started because their clients disconnected")
+                .register(registry);
+        abortedInFlight = Counter.builder("documind.llm.cancelled.in-flight")
+                .description("LLM calls aborted after they were sent; their prompt may already have been billed")
+                .register(registry);
+        unsentPromptTokens = Counter.builder("documind.llm.cancelled.unsent.tokens")
+                .description("Estimated prompt tokens of LLM calls cancelled before they were sent, which were never billed")
+                .register(registry);
+        registry.gauge("documind.llm.inflight.distinct", inFlight, Map::size);
+    }
+
+    /**
+     * Runs the call unless an identical request is already in flight, in which case its result is returned.
+     *
+     * @param request The request, with its anonymized prompt.
+     * @param cancellation Cancels the wait, and the upstream call if no other caller needs it.
+     * @param call Starts the LLM call; cancelling the returned future must abort the call.
+     * @return The raw (still anonymized) answer.
+     * @throws RequestCancelledException if the request is cancelled before the answer arrives.
+     */
+    public String execute(PromptRequest request, RequestCancellation cancellation,
+                          Supplier<CompletableFuture<String>> call) {
+        if (cancellation.isCancelled()) {
+            recordCancelled(request, false);
+            throw new RequestCancelledException();
+        }
+
+        String key = key(request);
+        boolean[] leader = {false};
+        Flight flight = inFlight.compute(key, (k, existing) -> {
+            if (existing != null && existing.attach()) {
+                return existing;
+            }
+            leader[0] = true;
+            return new Flight();
+        });
+
+        if (leader[0]) {
+            flight.result.whenComplete((answer, error) -> inFlight.remove(key, flight));
+            try {
+                flight.start(call.get());
+            } catch (RuntimeException e) {
+                flight.result.completeExceptionally(e);
+                throw e;
+            }
+        } else {
+            coalesced.increment();
+            Log.debugf("Coalesced LLM request %s with an in-flight call", key);
+        }
+
+        // Each caller waits on its own future so it can stop waiting without affecting the others
+        CompletableFuture<String> own = new CompletableFuture<>();
+        flight.result.whenComplete((answer, error) -> {
+            if (error != null) {
+                own.completeExceptionally(error);
+            } else {
+                own.complete(answer);
+            }
+        });
+
+        try (RequestCancellation.Registration ignored = cancellation.onCancel(() -> {
+            if (own.cancel(false)) {
+                Flight.Detached detached = flight.detach();
+                if (detached != Flight.Detached.KEPT) {
+                    recordCancelled(request, detached == Flight.Detached.ABORTED_IN_FLIGHT);
+                }
+            }
+        })) {
+            return own.join();
+        } catch (CancellationException e) {
+            throw new RequestCancelledException();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw new RequestCancelledException();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void recordCancelled(PromptRequest request, boolean sent) {
+        cancelled.increment();
+        if (sent) {
+            abortedInFlight.increment();
+        } else {
+            unsentPromptTokens.increment((double) request.promptChars() / CHARS_PER_TOKEN);
+        }
+    }
+
+    private static String key(PromptRequest request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getModel().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(request.getPrefix().digest());
+            digest.update(request.getSuffix().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * One upstream call and the number of callers waiting for it.
+     */
+    private static class Flight {
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private CompletableFuture<String> upstream;
+        private int waiters = 1;
+        private boolean abandoned;
+
+        synchronized boolean attach() {
+            if (abandoned || result.isDone()) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        void start(CompletableFuture<String> call) {
+            synchronized (this) {
+                upstream = call;
+                if (abandoned) {
+                    call.cancel(true);
+                }
+            }
+            call.whenComplete((answer, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(answer);
+                }
+            });
+        }
+
+        /**
+         * Detaches a caller, aborting the upstream call if it was the last one.
+         *
+         * @return Whether the call was kept, abandoned before it was sent, or aborted in flight.
+         */
+        Detached detach() {
+            CompletableFuture<String> toCancel;
+            synchronized (this) {
+                if (--waiters > 0 || result.isDone()) {
+                    return Detached.KEPT;
+                }
+                abandoned = true;
+                toCancel = upstream;
+            }
+            if (toCancel != null) {
+                toCancel.cancel(true);
+            }
+            result.cancel(false);
+            // The call is sent as soon as it is started, so a started call was in flight
+            return toCancel != null ? Detached.ABORTED_IN_FLIGHT : Detached.ABANDONED_UNSENT;
+        }
+
+        enum Detached {
+            KEPT,
+            ABANDONED_UNSENT,
+            ABORTED_IN_FLIGHT
+        }
+    }
+}
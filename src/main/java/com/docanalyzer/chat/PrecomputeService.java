@@ -0,0 +1,213 @@
+package com.docanalyzer.chat;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Speculatively answers a configurable set of standard prompts (e.g. "Summarize this document")
+ * after a document has been ingested, so a matching first question is answered instantly.
+ * <p>
+ * Pre-computation runs on a single low-priority thread and yields to live traffic: a task that
+ * would start while too many live requests are in flight is postponed, and running tasks are
+ * cancelled when live traffic crosses the threshold.
+ */
+@ApplicationScoped
+public class PrecomputeService {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "documind.precompute.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "documind.precompute.prompts")
+    Optional<List<String>> prompts;
+
+    @ConfigProperty(name = "documind.precompute.max-live-requests", defaultValue = "2")
+    int maxLiveRequests;
+
+    @ConfigProperty(name = "documind.precompute.retry-delay", defaultValue = "PT10S")
+    Duration retryDelay;
+
+    @ConfigProperty(name = "documind.precompute.max-attempts", defaultValue = "6")
+    int maxAttempts;
+
+    // sessionId -> normalized prompt -> raw (anonymized) answer
+    private final Map<String, Map<String, CompletableFuture<String>>> answers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Future<?>>> tasks = new ConcurrentHashMap<>();
+    // answer being computed -> cancellation of its LLM call
+    private final Map<CompletableFuture<String>, RequestCancellation> running = new ConcurrentHashMap<>();
+    private final AtomicInteger liveRequests = new AtomicInteger();
+
+    private ScheduledExecutorService executor;
+    private Counter hits;
+    private Counter cancelled;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "precompute-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        hits = Counter.builder("documind.precompute.hits")
+                .description("Questions answered from a pre-computed answer")
+                .register(registry);
+        cancelled = Counter.builder("documind.precompute.cancelled")
+                .description("Pre-computations cancelled or dropped because of live traffic")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules the pre-computation of the standard prompts for a session, discarding any
+     * answers computed for a previous document of the session.
+     *
+     * @param sessionId The ID of the chat session.
+     * @param answerer Computes the raw answer to a prompt for the session's current document,
+     *                 aborting its LLM call when the given cancellation is triggered.
+     */
+    public void schedule(String sessionId, BiFunction<String, RequestCancellation, String> answerer) {
+        clear(sessionId);
+        if (!enabled || prompts.isEmpty()) {
+            return;
+        }
+
+        Map<String, CompletableFuture<String>> sessionAnswers = new ConcurrentHashMap<>();
+        Map<String, Future<?>> sessionTasks = new ConcurrentHashMap<>();
+        answers.put(sessionId, sessionAnswers);
+        tasks.put(sessionId, sessionTasks);
+        for (String prompt : prompts.get()) {
+            String key = normalize(prompt);
+            CompletableFuture<String> answer = new CompletableFuture<>();
+            sessionAnswers.put(key, answer);
+            sessionTasks.put(key, executor.submit(() -> run(sessionId, prompt, key, answer, answerer, 1)));
+        }
+    }
+
+    private void run(String sessionId, String prompt, String key, CompletableFuture<String> answer,
+                     BiFunction<String, RequestCancellation, String> answerer, int attempt) {
+        Map<String, Future<?>> sessionTasks = tasks.get(sessionId);
+        if (sessionTasks == null || answer.isDone()) {
+            return; // Session cleared or a new document was uploaded
+        }
+
+        if (liveRequests.get() >= maxLiveRequests) {
+            if (attempt >= maxAttempts) {
+                Log.debugf("Dropping pre-computation of '%s' for session %s: live traffic is high", prompt, sessionId);
+                answer.cancel(false);
+                cancelled.increment();
+                return;
+            }
+            sessionTasks.put(key, executor.schedule(() -> run(sessionId, prompt, key, answer, answerer, attempt + 1),
+                    retryDelay.toMillis(), TimeUnit.MILLISECONDS));
+            return;
+        }
+
+        RequestCancellation cancellation = new RequestCancellation();
+        running.put(answer, cancellation);
+        try {
+            answer.complete(answerer.apply(prompt, cancellation));
+            Log.debugf("Pre-computed '%s' for session %s", prompt, sessionId);
+        } catch (Exception e) {
+            if (!answer.isCancelled()) {
+                Log.warnf(e, "Failed to pre-compute '%s' for session %s", prompt, sessionId);
+                answer.completeExceptionally(e);
+            }
+        } finally {
+            running.remove(answer);
+        }
+    }
+
+    /**
+     * Returns the pre-computed raw answer for a question, if the question matches a standard
+     * prompt and its answer is ready.
+     *
+     * @param sessionId The ID of the chat session.
+     * @param question The user's question.
+     * @return The raw (still anonymized) answer, or empty.
+     */
+    public Optional<String> findAnswer(String sessionId, String question) {
+        Map<String, CompletableFuture<String>> sessionAnswers = answers.get(sessionId);
+        if (sessionAnswers == null) {
+            return Optional.empty();
+        }
+        CompletableFuture<String> answer = sessionAnswers.get(normalize(question));
+        if (answer == null || !answer.isDone() || answer.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.ofNullable(answer.join());
+    }
+
+    /**
+     * Records the start of a live request. When live traffic reaches the threshold, the answer
+     * being computed is cancelled, aborting its LLM call; queued pre-computations are postponed
+     * when their turn comes.
+     */
+    public void liveRequestStarted() {
+        if (liveRequests.incrementAndGet() >= maxLiveRequests) {
+            running.forEach((answer, cancellation) -> {
+                if (answer.cancel(false)) {
+                    cancellation.cancel();
+                    cancelled.increment();
+                }
+            });
+        }
+    }
+
+    public void liveRequestFinished() {
+        liveRequests.decrementAndGet();
+    }
+
+    /**
+     * Cancels pending pre-computations and discards the answers of a session.
+     */
+    public void clear(String sessionId) {
+        Map<String, Future<?>> sessionTasks = tasks.remove(sessionId);
+        if (sessionTasks != null) {
+            sessionTasks.values().forEach(task -> task.cancel(true));
+        }
+        Map<String, CompletableFuture<String>> sessionAnswers = answers.remove(sessionId);
+        if (sessionAnswers != null) {
+            sessionAnswers.values().forEach(answer -> {
+                RequestCancellation cancellation = running.get(answer);
+                if (cancellation != null) {
+                    cancellation.cancel();
+                }
+            });
+        }
+    }
+
+    static String normalize(String question) {
+        return question.toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{N}]+", " ")
+                .trim();
+    }
+}
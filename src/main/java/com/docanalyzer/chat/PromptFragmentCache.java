@@ -0,0 +1,188 @@
+package com.docanalyzer.chat;
+
+import com.docanalyzer.document.CompressedDocument;
+import com.docanalyzer.huggingface.PromptFragment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the pre-encoded document prompt of recently active sessions, so consecutive messages
+ * about the same document neither decompress it nor JSON-encode it again. Documents answered
+ * with map-reduce are kept as one pre-encoded prompt per segment instead.
+ * <p>
+ * An entry is only valid for the document it was built from: uploading a new document to the
+ * session rebuilds it. Least recently used entries are evicted once the encoded fragments
+ * exceed {@code documind.chat.prompt-cache.max-bytes}. A fragment is roughly as large as the
+ * uncompressed document, so the budget is meant to cover the few sessions being chatted with
+ * right now, not every stored document; the bytes an entry holds are reported per session
+ * next to the compressed document.
+ */
+@ApplicationScoped
+public class PromptFragmentCache {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "documind.chat.prompt-cache.max-bytes", defaultValue = "33554432")
+    long maxBytes;
+
+    // Access-ordered, so iteration starts with the least recently used session
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private Counter hits;
+    private Counter misses;
+    private Timer buildTimer;
+    private DistributionSummary entryBytes;
+
+    @PostConstruct
+    void init() {
+        hits = Counter.builder("documind.chat.prompt-cache.hits")
+                .description("Messages that reused the pre-encoded document prompt of their session")
+                .register(registry);
+        misses = Counter.builder("documind.chat.prompt-cache.misses")
+                .description("Messages that had to build the pre-encoded document prompt")
+                .register(registry);
+        buildTimer = Timer.builder("documind.chat.prompt-cache.build")
+                .description("Time spent decompressing and encoding a document prompt")
+                .register(registry);
+        entryBytes = DistributionSummary.builder("documind.chat.prompt-cache.entry.bytes")
+                .description("Heap held by the cached prompt of one session when it is built")
+                .baseUnit("bytes")
+                .register(registry);
+        registry.gauge("documind.chat.prompt-cache.bytes", this, PromptFragmentCache::totalBytes);
+        registry.gauge("documind.chat.prompt-cache.sessions", entries, cached -> size());
+    }
+
+    /**
+     * Returns the session's document prompt, building it if the cached one is missing or was
+     * built from another document.
+     *
+     * @param sessionId The ID of the chat session.
+     * @param document The session's current document.
+     * @param prompt Assembles the plain prompt text for the document.
+     * @return The pre-encoded prompt.
+     */
+    public PromptFragment get(String sessionId, CompressedDocument document, Supplier<String> prompt) {
+        return lookup(sessionId, document, false, () -> List.of(PromptFragment.of(prompt.get()))).get(0);
+    }
+
+    /**
+     * Returns the session's per-segment prompts for map-reduce, building them if the cached ones
+     * are missing or were built from another document.
+     *
+     * @param sessionId The ID of the chat session.
+     * @param document The session's current document.
+     * @param segments Assembles the plain prompt text of each segment, in document order.
+     * @return The pre-encoded segment prompts.
+     */
+    public List<PromptFragment> segments(String sessionId, CompressedDocument document, Supplier<List<String>> segments) {
+        return lookup(sessionId, document, true, () -> {
+            List<String> prompts = segments.get();
+            List<PromptFragment> fragments = new ArrayList<>(prompts.size());
+            for (String prompt : prompts) {
+                fragments.add(PromptFragment.of(prompt));
+            }
+            return List.copyOf(fragments);
+        });
+    }
+
+    public synchronized void remove(String sessionId) {
+        Entry removed = entries.remove(sessionId);
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+        }
+    }
+
+    /**
+     * @param sessionId The ID of the chat session.
+     * @return The bytes held by the session's cached prompt, or 0 if none is cached.
+     */
+    public synchronized long bytes(String sessionId) {
+        // Not entries.get(), which would count as an access and keep the entry from being evicted
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getKey().equals(sessionId)) {
+                return entry.getValue().bytes;
+            }
+        }
+        return 0;
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private List<PromptFragment> lookup(String sessionId, CompressedDocument document, boolean segmented,
+                                        Supplier<List<PromptFragment>> build) {
+        synchronized (this) {
+            Entry entry = entries.get(sessionId);
+            if (entry != null && entry.document == document && entry.segmented == segmented) {
+                hits.increment();
+                return entry.fragments;
+            }
+        }
+
+        // Built outside the lock; concurrent first messages of a session may both build it
+        misses.increment();
+        List<PromptFragment> fragments = buildTimer.record(build);
+        Entry entry = new Entry(document, segmented, fragments);
+        entryBytes.record(entry.bytes);
+        put(sessionId, entry);
+        return fragments;
+    }
+
+    private synchronized void put(String sessionId, Entry entry) {
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(sessionId, entry);
+        if (previous != null) {
+            totalBytes -= previous.bytes;
+        }
+        totalBytes += entry.bytes;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            if (evicted.getValue() != entry) {
+                totalBytes -= evicted.getValue().bytes;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final CompressedDocument document;
+        private final boolean segmented;
+        private final List<PromptFragment> fragments;
+        private final long bytes;
+
+        Entry(CompressedDocument document, boolean segmented, List<PromptFragment> fragments) {
+            this.document = document;
+            this.segmented = segmented;
+            this.fragments = fragments;
+            long size = 0;
+            for (PromptFragment fragment : fragments) {
+                size += fragment.encodedBytes();
+            }
+            this.bytes = size;
+        }
+    }
+}
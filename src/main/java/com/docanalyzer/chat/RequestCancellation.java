@@ -0,0 +1,80 @@
+package com.docanalyzer.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Signals that the client of a chat request is gone and the work done on its behalf
+ * should stop. Callbacks registered with {@link #onCancel(Runnable)} run once, on the
+ * thread that cancels, or immediately if the request is already cancelled.
+ */
+public class RequestCancellation {
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private boolean cancelled;
+
+    /**
+     * @return A cancellation that is never triggered.
+     */
+    public static RequestCancellation none() {
+        return new RequestCancellation();
+    }
+
+    /**
+     * Cancels the request and runs the registered callbacks.
+     *
+     * @return true if this call cancelled the request, false if it was already cancelled.
+     */
+    public boolean cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        toRun.forEach(Runnable::run);
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers a callback to run on cancellation.
+     *
+     * @param callback The callback.
+     * @return A handle that unregisters the callback when closed.
+     */
+    public Registration onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (this) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        callback.run();
+        return () -> { };
+    }
+
+    /**
+     * @throws RequestCancelledException if the request has been cancelled.
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new RequestCancelledException();
+        }
+    }
+
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
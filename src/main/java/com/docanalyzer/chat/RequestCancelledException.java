@@ -0,0 +1,8 @@
+package com.docanalyzer.chat;
+
+public class RequestCancelledException extends ChatServiceException {
+
+    public RequestCancelledException() {
+        super("The request was cancelled by the client");
+    }
+}
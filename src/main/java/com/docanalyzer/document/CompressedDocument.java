@@ -0,0 +1,164 @@
+package com.docanalyzer.document;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable, block-compressed representation of a document's text.
+ * <p>
+ * The text is split into blocks of a fixed number of characters; each block is
+ * encoded as UTF-8 and compressed independently with Deflate, so callers can
+ * decompress one block at a time instead of materialising the whole document.
+ * Block boundaries never split a surrogate pair, so every block decodes on its own.
+ */
+public final class CompressedDocument {
+
+    // Approximate JVM overhead of a byte[] / int[] header, used for heap accounting.
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final List<byte[]> blocks;
+    private final int[] blockUtf8Lengths;
+    private final int length;
+    private final long originalBytes;
+    private final long compressedBytes;
+
+    private CompressedDocument(List<byte[]> blocks, int[] blockUtf8Lengths, int length,
+                               long originalBytes, long compressedBytes) {
+        this.blocks = blocks;
+        this.blockUtf8Lengths = blockUtf8Lengths;
+        this.length = length;
+        this.originalBytes = originalBytes;
+        this.compressedBytes = compressedBytes;
+    }
+
+    /**
+     * Compresses the given text.
+     *
+     * @param text The text to compress.
+     * @param blockChars The maximum number of characters per block.
+     * @param level The Deflate compression level (0-9).
+     * @return The compressed document.
+     */
+    public static CompressedDocument compress(String text, int blockChars, int level) {
+        if (blockChars <= 1) {
+            throw new IllegalArgumentException("Block size must be greater than 1 character");
+        }
+
+        List<byte[]> blocks = new ArrayList<>();
+        List<Integer> utf8Lengths = new ArrayList<>();
+        long originalBytes = 0;
+        long compressedBytes = 0;
+
+        Deflater deflater = new Deflater(level);
+        byte[] buffer = new byte[8192];
+        try {
+            int start = 0;
+            while (start < text.length()) {
+                int end = Math.min(start + blockChars, text.length());
+                if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                    end--;
+                }
+
+                byte[] raw = text.substring(start, end).getBytes(StandardCharsets.UTF_8);
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    out.write(buffer, 0, count);
+                }
+                byte[] compressed = out.toByteArray();
+
+                blocks.add(compressed);
+                utf8Lengths.add(raw.length);
+                originalBytes += raw.length;
+                compressedBytes += compressed.length;
+                start = end;
+            }
+        } finally {
+            deflater.end();
+        }
+
+        int[] lengths = utf8Lengths.stream().mapToInt(Integer::intValue).toArray();
+        return new CompressedDocument(List.copyOf(blocks), lengths, text.length(), originalBytes, compressedBytes);
+    }
+
+    /**
+     * Decompresses the document block by block, appending each block to the target.
+     *
+     * @param target The builder to append the document text to.
+     */
+    public void appendTo(StringBuilder target) {
+        Inflater inflater = new Inflater();
+        try {
+            for (int i = 0; i < blocks.size(); i++) {
+                target.append(inflate(inflater, i));
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private String inflate(Inflater inflater, int index) {
+        byte[] raw = new byte[blockUtf8Lengths[index]];
+        inflater.reset();
+        inflater.setInput(blocks.get(index));
+        try {
+            int offset = 0;
+            while (offset < raw.length && !inflater.finished()) {
+                offset += inflater.inflate(raw, offset, raw.length - offset);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted document block " + index, e);
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    //<editor-fold desc="Getters">
+    public int blockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * @return The document length in characters.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return The size of the document encoded as UTF-8.
+     */
+    public long originalBytes() {
+        return originalBytes;
+    }
+
+    public long compressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return The ratio of the UTF-8 size to the compressed size (higher is better).
+     */
+    public double compressionRatio() {
+        return compressedBytes == 0 ? 1.0 : (double) originalBytes / compressedBytes;
+    }
+
+    /**
+     * @return An estimate of the heap retained by this document, including array headers.
+     */
+    public long retainedBytes() {
+        long total = ARRAY_HEADER_BYTES + 4L * blockUtf8Lengths.length;
+        for (byte[] block : blocks) {
+            total += ARRAY_HEADER_BYTES + block.length;
+        }
+        return total;
+    }
+    //</editor-fold>
+}
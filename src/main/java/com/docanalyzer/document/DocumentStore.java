@@ -0,0 +1,92 @@
+package com.docanalyzer.document;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the anonymized document of each chat session in compressed form and
+ * keeps track of how much heap each session uses.
+ */
+@ApplicationScoped
+public class DocumentStore {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "documind.document.block-size", defaultValue = "65536")
+    int blockSize;
+
+    @ConfigProperty(name = "documind.document.compression-level", defaultValue = "6")
+    int compressionLevel;
+
+    private final Map<String, CompressedDocument> documents = new ConcurrentHashMap<>();
+
+    private Timer compressTimer;
+    private Timer decompressTimer;
+    private DistributionSummary compressionRatio;
+
+    @PostConstruct
+    void initMetrics() {
+        compressTimer = Timer.builder("documind.documents.compress")
+                .description("Time spent compressing session documents")
+                .register(registry);
+        decompressTimer = Timer.builder("documind.documents.decompress")
+                .description("Time spent decompressing session documents while assembling prompts")
+                .register(registry);
+        compressionRatio = DistributionSummary.builder("documind.documents.compression.ratio")
+                .description("UTF-8 size divided by compressed size of each stored document")
+                .tag("blockSize", String.valueOf(blockSize))
+                .register(registry);
+        registry.gauge("documind.documents.sessions", documents, Map::size);
+        registry.gauge("documind.documents.heap.bytes", this, DocumentStore::totalRetainedBytes);
+    }
+
+    /**
+     * Compresses and stores the document for a session, replacing any previous one.
+     *
+     * @param sessionId The ID of the chat session.
+     * @param text The (anonymized) document text.
+     * @return The stored document.
+     */
+    public CompressedDocument put(String sessionId, String text) {
+        CompressedDocument document = compressTimer.record(() -> CompressedDocument.compress(text, blockSize, compressionLevel));
+        compressionRatio.record(document.compressionRatio());
+        documents.put(sessionId, document);
+        Log.infof("Stored document for session %s: %d chars, %d bytes UTF-8, %d bytes compressed in %d blocks (ratio %.2f)",
+                sessionId, document.length(), document.originalBytes(), document.compressedBytes(),
+                document.blockCount(), document.compressionRatio());
+        return document;
+    }
+
+    public Optional<CompressedDocument> get(String sessionId) {
+        return Optional.ofNullable(documents.get(sessionId));
+    }
+
+    public void remove(String sessionId) {
+        documents.remove(sessionId);
+    }
+
+    /**
+     * Decompresses the document into the target builder, recording the decompression time.
+     *
+     * @param document The document to decompress.
+     * @param target The builder to append the document text to.
+     */
+    public void appendTo(CompressedDocument document, StringBuilder target) {
+        decompressTimer.record(() -> document.appendTo(target));
+    }
+
+    public long totalRetainedBytes() {
+        return documents.values().stream().mapToLong(CompressedDocument::retainedBytes).sum();
+    }
+}
@@ -0,0 +1,12 @@
+package com.docanalyzer.extraction;
+
+public class ExtractionException extends RuntimeException {
+
+    public ExtractionException(String message) {
+        super(message);
+    }
+
+    public ExtractionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
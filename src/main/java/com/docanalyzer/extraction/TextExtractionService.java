@@ -0,0 +1,387 @@
+package com.docanalyzer.extraction;
+
+import com.docanalyzer.jfr.DocumentParseEvent;
+import com.docanalyzer.jfr.Outcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts plain text from uploaded documents with a pool of reusable, pre-warmed Tika parsers.
+ * <p>
+ * Parsing runs on a dedicated, fixed-size thread pool, isolated from the HTTP worker threads.
+ * Each document gets a time budget, counted from when its parse starts, and a maximum number of
+ * extracted characters; waiting for a free parser has a separate bound. A parse that exceeds its
+ * time budget is abandoned: the caller gets an error right away, but since parsers such as PDFBox
+ * and POI ignore interrupts, the parse keeps its slot until it actually stops and its parser is
+ * then replaced. Runaway files can therefore never occupy more than the pool's threads; further
+ * uploads wait for a slot instead. The {@code documind.extraction.abandoned} gauge shows how many
+ * slots are held by abandoned parses.
+ */
+@ApplicationScoped
+public class TextExtractionService {
+
+    private static final String WARM_UP_TEXT = "Documind parser warm-up.";
+
+    // Tiny embedded samples that make each parser load and initialize PDFBox and POI at startup
+    private static final String[] WARM_UP_SAMPLES = {"extraction/warm-up.pdf", "extraction/warm-up.docx"};
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "documind.extraction.pool-size", defaultValue = "4")
+    int poolSize;
+
+    @ConfigProperty(name = "documind.extraction.timeout", defaultValue = "PT60S")
+    Duration timeout;
+
+    @ConfigProperty(name = "documind.extraction.slot-timeout", defaultValue = "PT30S")
+    Duration slotTimeout;
+
+    @ConfigProperty(name = "documind.extraction.max-chars", defaultValue = "10000000")
+    int maxChars;
+
+    private BlockingQueue<Parser> parsers;
+    private Semaphore slots;
+    private ExecutorService executor;
+
+    private final AtomicInteger abandonedParses = new AtomicInteger();
+
+    private Counter timeouts;
+    private Counter slotTimeouts;
+    private Counter limitExceeded;
+
+    @PostConstruct
+    void init() {
+        parsers = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            parsers.add(TikaParsers.newParser());
+        }
+        slots = new Semaphore(poolSize, true);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // A parse only starts once it holds a slot, so the pool never needs more threads than slots
+        executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "tika-parser-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        timeouts = Counter.builder("documind.extraction.timeouts")
+                .description("Documents whose parsing exceeded the time budget")
+                .register(registry);
+        slotTimeouts = Counter.builder("documind.extraction.slot.timeouts")
+                .description("Documents rejected because no parser became free in time")
+                .register(registry);
+        limitExceeded = Counter.builder("documind.extraction.limit.exceeded")
+                .description("Documents whose extracted text exceeded the maximum number of characters")
+                .register(registry);
+        registry.gauge("documind.extraction.slots.available", slots, Semaphore::availablePermits);
+        registry.gauge("documind.extraction.abandoned", abandonedParses);
+    }
+
+    /**
+     * Warms every pooled parser at startup with a plain-text, a PDF and a DOCX sample, so the
+     * first upload does not pay for detector, PDFBox and POI initialisation.
+     */
+    void onStart(@Observes StartupEvent event) {
+        long start = System.nanoTime();
+        for (Parser parser : parsers) {
+            parser.getSupportedTypes(new ParseContext());
+            warmUp(parser, "warm-up.txt", new ByteArrayInputStream(WARM_UP_TEXT.getBytes(StandardCharsets.UTF_8)));
+            for (String sample : WARM_UP_SAMPLES) {
+                warmUp(parser, sample, getClass().getClassLoader().getResourceAsStream(sample));
+            }
+        }
+        Log.infof("Warmed %d Tika parsers in %d ms", parsers.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static void warmUp(Parser parser, String name, InputStream sample) {
+        if (sample == null) {
+            Log.warnf("Tika warm-up sample %s not found", name);
+            return;
+        }
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, name);
+        try (InputStream stream = sample) {
+            parser.parse(stream, new BodyContentHandler(), metadata, new ParseContext());
+        } catch (Exception e) {
+            Log.warnf(e, "Failed to warm up Tika parser with %s", name);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Extracts the text of a document, enforcing the configured time budget and character limit.
+     *
+     * @param sessionId The ID of the chat session the document belongs to, for diagnostics.
+     * @param documentStream The raw document content.
+     * @param fileName The original file name, used as a hint for content type detection.
+     * @return The extracted text and the detected content type.
+     * @throws ExtractionException if the document cannot be parsed, exceeds a limit, or no parser becomes available in time.
+     */
+    public ExtractedText extract(String sessionId, InputStream documentStream, String fileName) {
+        try {
+            if (!slots.tryAcquire(slotTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                slotTimeouts.increment();
+                throw new ExtractionException("No parser available within " + slotTimeout.toSeconds() + "s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtractionException("Interrupted while waiting for a parser", e);
+        }
+
+        Parser parser = parsers.poll();
+        if (parser == null) {
+            parser = TikaParsers.newParser();
+        }
+
+        ParseTask task = new ParseTask(parser, sessionId, documentStream, fileName);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            parsers.offer(parser);
+            slots.release();
+            throw new ExtractionException("Text extraction is shutting down", e);
+        }
+
+        try {
+            // The pool has a thread per slot, so the parse starts right away; its budget starts with it
+            if (!task.started.await(slotTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                task.abandon();
+                slotTimeouts.increment();
+                throw new ExtractionException("Parsing " + fileName + " did not start within " + slotTimeout.toSeconds() + "s");
+            }
+            long deadline = task.start + timeout.toNanos();
+            return task.result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            task.abandon();
+            timeouts.increment();
+            throw new ExtractionException("Parsing " + fileName + " exceeded the time budget of " + timeout.toSeconds() + "s");
+        } catch (InterruptedException e) {
+            task.abandon();
+            Thread.currentThread().interrupt();
+            throw new ExtractionException("Interrupted while parsing " + fileName, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExtractionException) {
+                throw (ExtractionException) cause;
+            }
+            throw new ExtractionException("Failed to parse " + fileName + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    private ExtractedText parse(Parser parser, String sessionId, InputStream documentStream, String fileName, long start) throws Exception {
+        DocumentParseEvent event = new DocumentParseEvent();
+        event.begin();
+        Metadata metadata = new Metadata();
+        if (fileName != null) {
+            metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, fileName);
+        }
+        BodyContentHandler handler = new BodyContentHandler(maxChars);
+
+        String outcome = Outcome.FAILED;
+        String contentType = null;
+        long bytes = 0;
+        int chars = 0;
+        try (TikaInputStream stream = TikaInputStream.get(documentStream)) {
+            try {
+                parser.parse(stream, handler, metadata, new ParseContext());
+            } catch (Exception e) {
+                bytes = stream.getPosition();
+                if (WriteLimitReachedException.isWriteLimitReached(e)) {
+                    limitExceeded.increment();
+                    throw new ExtractionException("Document " + fileName + " exceeds the maximum of " + maxChars + " extracted characters");
+                }
+                throw e;
+            }
+
+            contentType = baseContentType(metadata.get(Metadata.CONTENT_TYPE));
+            bytes = stream.getPosition();
+            long nanos = System.nanoTime() - start;
+            recordThroughput(contentType, bytes, nanos);
+            String text = handler.toString();
+            chars = text.length();
+            outcome = Outcome.OK;
+            return new ExtractedText(text, contentType, bytes);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.sessionId = sessionId;
+                event.fileName = fileName;
+                event.contentType = contentType != null ? contentType : baseContentType(metadata.get(Metadata.CONTENT_TYPE));
+                event.bytes = bytes;
+                event.chars = chars;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private void recordThroughput(String contentType, long bytes, long nanos) {
+        Timer.builder("documind.extraction.duration")
+                .description("Time spent extracting text per document")
+                .tag("contentType", contentType)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos > 0) {
+            DistributionSummary.builder("documind.extraction.throughput")
+                    .description("Text extraction throughput per document")
+                    .baseUnit("MB/s")
+                    .tag("contentType", contentType)
+                    .register(registry)
+                    .record((bytes / (1024.0 * 1024.0)) / (nanos / 1_000_000_000.0));
+        }
+    }
+
+    private static String baseContentType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return "unknown";
+        }
+        int separator = contentType.indexOf(';');
+        return (separator < 0 ? contentType : contentType.substring(0, separator)).trim();
+    }
+
+    /**
+     * One parse on the extraction pool. It owns a slot and a parser, and gives both back only
+     * when it really finishes, even if the caller has stopped waiting for it.
+     */
+    private final class ParseTask implements Runnable {
+        private final Parser parser;
+        private final String sessionId;
+        private final InputStream documentStream;
+        private final String fileName;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CompletableFuture<ExtractedText> result = new CompletableFuture<>();
+        private volatile long start; // set before started is counted down
+        private Thread thread;
+        private boolean finished;
+        private boolean abandoned;
+
+        ParseTask(Parser parser, String sessionId, InputStream documentStream, String fileName) {
+            this.parser = parser;
+            this.sessionId = sessionId;
+            this.documentStream = documentStream;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public void run() {
+            boolean abandonedEarly;
+            synchronized (this) {
+                thread = Thread.currentThread();
+                abandonedEarly = abandoned;
+            }
+            start = System.nanoTime();
+            started.countDown();
+            try {
+                // The caller gave up before the parse started: abandon() either found no thread to
+                // interrupt yet, or interrupted this one before the parser got to see it
+                if (abandonedEarly || Thread.currentThread().isInterrupted()) {
+                    throw new ExtractionException("Parsing " + fileName + " was abandoned before it started");
+                }
+                result.complete(parse(parser, sessionId, documentStream, fileName, start));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                boolean wasAbandoned;
+                synchronized (this) {
+                    finished = true;
+                    thread = null;
+                    wasAbandoned = abandoned;
+                }
+                // Clear an interrupt that arrived too late to matter before the pool thread is reused
+                Thread.interrupted();
+                if (wasAbandoned) {
+                    abandonedParses.decrementAndGet();
+                    Log.infof("Abandoned parse of %s for session %s stopped after %d ms", fileName, sessionId,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                // A parser that was interrupted mid-parse may be in an inconsistent state
+                parsers.offer(wasAbandoned && !abandonedEarly ? TikaParsers.newParser() : parser);
+                slots.release();
+            }
+        }
+
+        /**
+         * Stops waiting for the parse and interrupts it, or makes it skip the parse if it has not
+         * started yet. The slot stays taken until the task ends.
+         */
+        synchronized void abandon() {
+            if (finished || abandoned) {
+                return;
+            }
+            abandoned = true;
+            int stuck = abandonedParses.incrementAndGet();
+            if (thread != null) {
+                thread.interrupt();
+                Log.warnf("Abandoned parse of %s for session %s; %d of %d parser slots are held by abandoned parses",
+                        fileName, sessionId, stuck, poolSize);
+            }
+        }
+    }
+
+    /**
+     * The text extracted from a document.
+     */
+    public static class ExtractedText {
+        private final String text;
+        private final String contentType;
+        private final long bytesRead;
+
+        public ExtractedText(String text, String contentType, long bytesRead) {
+            this.text = text;
+            this.contentType = contentType;
+            this.bytesRead = bytesRead;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.docanalyzer.extraction;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.Parser;
+
+/**
+ * Holds the shared Tika configuration (detectors and parser registry).
+ * <p>
+ * The configuration is loaded once per process instead of once per parser. Native images
+ * rely on the quarkus-tika extension's native configuration; it is deliberately not forced
+ * into the image heap, which would require build-time initialization of everything it reaches.
+ */
+public final class TikaParsers {
+
+    private static final TikaConfig CONFIG = TikaConfig.getDefaultConfig();
+
+    private TikaParsers() {
+    }
+
+    public static Parser newParser() {
+        return new AutoDetectParser(CONFIG);
+    }
+}
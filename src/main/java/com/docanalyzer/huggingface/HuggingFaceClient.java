@@ -1,14 +1,23 @@
 package com.docanalyzer.huggingface;
 
+import io.smallrye.mutiny.Uni;
+import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
 @Path("/v1/chat/completions")
 @RegisterRestClient(configKey = "huggingface-api")
+@RegisterProvider(PromptRequestWriter.class)
 public interface HuggingFaceClient {
 
+    /**
+     * Non-blocking variant taking a pre-encoded prompt; cancelling the subscription aborts the HTTP request.
+     */
     @POST
-    HuggingFaceResponse createChatCompletion(HuggingFaceRequest request, @HeaderParam("Authorization") String token);
+    @Consumes(MediaType.APPLICATION_JSON)
+    Uni<HuggingFaceResponse> createChatCompletionAsync(PromptRequest request, @HeaderParam("Authorization") String token);
 }
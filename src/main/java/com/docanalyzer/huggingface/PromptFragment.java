@@ -0,0 +1,67 @@
+package com.docanalyzer.huggingface;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A piece of prompt text that has already been JSON-escaped and UTF-8 encoded, ready to be
+ * copied as-is into the "content" string of a chat completion request.
+ * <p>
+ * Large, repeated prompt parts (the system prompt plus the document) are encoded once and then
+ * written into every request body without being copied into a new string or escaped again.
+ */
+public final class PromptFragment {
+
+    public static final PromptFragment EMPTY = new PromptFragment(new byte[0], 0);
+
+    private final byte[] escapedUtf8;
+    private final int chars;
+    private final byte[] digest;
+
+    private PromptFragment(byte[] escapedUtf8, int chars) {
+        this.escapedUtf8 = escapedUtf8;
+        this.chars = chars;
+        this.digest = sha256(escapedUtf8);
+    }
+
+    /**
+     * Encodes the text. It must not end in the middle of a surrogate pair.
+     */
+    public static PromptFragment of(String text) {
+        return new PromptFragment(JsonStringEncoder.getInstance().quoteAsUTF8(text), text.length());
+    }
+
+    /**
+     * @return The JSON-escaped UTF-8 bytes, without surrounding quotes. Must not be modified.
+     */
+    byte[] escapedUtf8() {
+        return escapedUtf8;
+    }
+
+    //<editor-fold desc="Getters">
+    public int chars() {
+        return chars;
+    }
+
+    public int encodedBytes() {
+        return escapedUtf8.length;
+    }
+
+    /**
+     * @return The SHA-256 digest of the encoded bytes, computed once. Must not be modified.
+     */
+    public byte[] digest() {
+        return digest;
+    }
+    //</editor-fold>
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.docanalyzer.huggingface;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single-message, non-streaming chat completion request whose prompt is a pre-encoded
+ * {@link PromptFragment} followed by a short suffix (typically the user's question).
+ * <p>
+ * It is written by {@link PromptRequestWriter} as the chat completion JSON with one "user"
+ * message, {@code {"messages":[{"role":"user","content":...}],"model":...,"stream":false}}, but
+ * only the suffix is escaped and encoded per request.
+ */
+public final class PromptRequest {
+
+    private static final byte[] MESSAGES_START = "{\"messages\":[{\"role\":\"user\",\"content\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MODEL_START = "\"}],\"model\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REQUEST_END = "\",\"stream\":false}".getBytes(StandardCharsets.UTF_8);
+
+    private final String model;
+    private final PromptFragment prefix;
+    private final String suffix;
+
+    public PromptRequest(String model, PromptFragment prefix, String suffix) {
+        this.model = model;
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Creates a request for a prompt that is used only once and is not worth pre-encoding.
+     */
+    public static PromptRequest of(String model, String prompt) {
+        return new PromptRequest(model, PromptFragment.EMPTY, prompt);
+    }
+
+    /**
+     * Writes the request body as JSON.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        out.write(MESSAGES_START);
+        out.write(prefix.escapedUtf8());
+        out.write(encoder.quoteAsUTF8(suffix));
+        out.write(MODEL_START);
+        out.write(encoder.quoteAsUTF8(model));
+        out.write(REQUEST_END);
+    }
+
+    /**
+     * @return The length of the prompt in characters.
+     */
+    public int promptChars() {
+        return prefix.chars() + suffix.length();
+    }
+
+    //<editor-fold desc="Getters">
+    public String getModel() {
+        return model;
+    }
+
+    public PromptFragment getPrefix() {
+        return prefix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+    //</editor-fold>
+}
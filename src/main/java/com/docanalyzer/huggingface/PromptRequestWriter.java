@@ -0,0 +1,73 @@
+package com.docanalyzer.huggingface;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a {@link PromptRequest} into the HTTP request body, copying the pre-encoded prompt
+ * fragment instead of serializing the whole prompt with Jackson.
+ * <p>
+ * The heap allocated and the CPU time spent by the calling thread to write each body are
+ * recorded as {@code documind.llm.request.allocated} and {@code documind.llm.request.cpu}.
+ * REST client providers are not CDI beans, so the meters are registered in the global registry.
+ */
+@Produces(MediaType.APPLICATION_JSON)
+public class PromptRequestWriter implements MessageBodyWriter<PromptRequest> {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private final DistributionSummary allocated = DistributionSummary.builder("documind.llm.request.allocated")
+            .description("Heap allocated while writing one LLM request body")
+            .baseUnit("bytes")
+            .register(Metrics.globalRegistry);
+
+    private final Timer cpu = Timer.builder("documind.llm.request.cpu")
+            .description("CPU time spent writing one LLM request body")
+            .register(Metrics.globalRegistry);
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return PromptRequest.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(PromptRequest request, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        boolean measured = THREADS != null;
+        long allocatedBefore = measured ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+        long cpuBefore = measured ? THREADS.getCurrentThreadCpuTime() : 0;
+
+        request.writeTo(entityStream);
+
+        if (measured) {
+            allocated.record(THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore);
+            cpu.record(THREADS.getCurrentThreadCpuTime() - cpuBefore, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return The thread MXBean if it can measure per-thread allocation and CPU time (not the case in every native image), or null.
+     */
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()
+                && threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled()) {
+            return threads;
+        }
+        return null;
+    }
+}
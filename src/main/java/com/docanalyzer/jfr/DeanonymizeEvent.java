@@ -0,0 +1,29 @@
+package com.docanalyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.docanalyzer.Deanonymize")
+@Label("De-anonymize")
+@Category({"Documind", "Chat"})
+@Description("Replacement of placeholders with original values in an LLM response")
+@StackTrace(false)
+public class DeanonymizeEvent extends Event {
+
+    @Label("Session ID")
+    public String sessionId;
+
+    @Label("Response Characters")
+    public long chars;
+
+    @Label("Mappings")
+    public int mappings;
+
+    @Label("Outcome")
+    @Description("ok, failed or cancelled")
+    public String outcome;
+}
@@ -0,0 +1,37 @@
+package com.docanalyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.docanalyzer.DocumentParse")
+@Label("Document Parse")
+@Category({"Documind", "Ingestion"})
+@Description("Text extraction of an uploaded document with Tika")
+@StackTrace(false)
+public class DocumentParseEvent extends Event {
+
+    @Label("Session ID")
+    public String sessionId;
+
+    @Label("File Name")
+    public String fileName;
+
+    @Label("Content Type")
+    public String contentType;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytes;
+
+    @Label("Extracted Characters")
+    public long chars;
+
+    @Label("Outcome")
+    @Description("ok, failed or cancelled")
+    public String outcome;
+}
@@ -0,0 +1,38 @@
+package com.docanalyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.docanalyzer.LlmCall")
+@Label("LLM Call")
+@Category({"Documind", "Chat"})
+@Description("Chat completion call to the LLM")
+@StackTrace(false)
+public class LlmCallEvent extends Event {
+
+    @Label("Session ID")
+    public String sessionId;
+
+    @Label("Model")
+    public String model;
+
+    @Label("Prompt Characters")
+    public long promptChars;
+
+    @Label("Response Characters")
+    public long responseChars;
+
+    @Label("Prompt Tokens")
+    public int promptTokens;
+
+    @Label("Completion Tokens")
+    public int completionTokens;
+
+    @Label("Outcome")
+    @Description("ok, failed or cancelled")
+    public String outcome;
+}
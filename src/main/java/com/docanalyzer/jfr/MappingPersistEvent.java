@@ -0,0 +1,26 @@
+package com.docanalyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.docanalyzer.MappingPersist")
+@Label("Mapping Persist")
+@Category({"Documind", "Ingestion"})
+@Description("Storage of placeholder mappings in the database")
+@StackTrace(false)
+public class MappingPersistEvent extends Event {
+
+    @Label("Session ID")
+    public String sessionId;
+
+    @Label("Mappings")
+    public int mappings;
+
+    @Label("Outcome")
+    @Description("ok, failed or cancelled")
+    public String outcome;
+}
@@ -0,0 +1,14 @@
+package com.docanalyzer.jfr;
+
+/**
+ * Values of the "outcome" field of the Documind events.
+ */
+public final class Outcome {
+
+    public static final String OK = "ok";
+    public static final String FAILED = "failed";
+    public static final String CANCELLED = "cancelled";
+
+    private Outcome() {
+    }
+}
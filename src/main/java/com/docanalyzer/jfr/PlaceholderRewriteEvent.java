@@ -0,0 +1,32 @@
+package com.docanalyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.docanalyzer.PlaceholderRewrite")
+@Label("Placeholder Rewrite")
+@Category({"Documind", "Ingestion"})
+@Description("Replacement of recognized entities with placeholders")
+@StackTrace(false)
+public class PlaceholderRewriteEvent extends Event {
+
+    @Label("Session ID")
+    public String sessionId;
+
+    @Label("Text Characters")
+    public long chars;
+
+    @Label("Entities")
+    public int entities;
+
+    @Label("Distinct Placeholders")
+    public int placeholders;
+
+    @Label("Outcome")
+    @Description("ok, failed or cancelled")
+    public String outcome;
+}
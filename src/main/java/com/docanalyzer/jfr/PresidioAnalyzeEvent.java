@@ -0,0 +1,29 @@
+package com.docanalyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.docanalyzer.PresidioAnalyze")
+@Label("Presidio Analyze")
+@Category({"Documind", "Ingestion"})
+@Description("Call to the Presidio analyze API, including the wait for a free slot")
+@StackTrace(false)
+public class PresidioAnalyzeEvent extends Event {
+
+    @Label("Session ID")
+    public String sessionId;
+
+    @Label("Text Characters")
+    public long chars;
+
+    @Label("Entities")
+    public int entities;
+
+    @Label("Outcome")
+    @Description("ok, failed or cancelled")
+    public String outcome;
+}
@@ -0,0 +1,94 @@
+package com.docanalyzer.jfr;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+
+@Path("/api/admin/recording")
+@ApplicationScoped
+@RolesAllowed("admin")
+public class RecordingResource {
+
+    private static final Logger LOG = Logger.getLogger(RecordingResource.class);
+
+    @Inject
+    RecordingService recordingService;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get recording status", description = "Returns whether a JFR recording is running and its limits.")
+    public Response status() {
+        return Response.ok(recordingService.status()).build();
+    }
+
+    @POST
+    @Path("/start")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Start a JFR recording", description = "Starts a low-overhead JDK Flight Recorder recording including the ingestion and chat pipeline events. maxAge is an ISO-8601 duration (e.g. PT30M), maxSize is in bytes.")
+    public Response start(@QueryParam("maxAge") String maxAge, @QueryParam("maxSize") long maxSize) {
+        Duration age;
+        try {
+            age = maxAge == null || maxAge.isBlank() ? null : Duration.parse(maxAge);
+        } catch (DateTimeParseException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Collections.singletonMap("error", "Invalid maxAge: " + maxAge)).build();
+        }
+        if (!recordingService.start(age, maxSize)) {
+            return Response.status(Response.Status.CONFLICT).entity(Collections.singletonMap("error", "A recording is already running")).build();
+        }
+        return Response.ok(recordingService.status()).build();
+    }
+
+    @GET
+    @Path("/dump")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @Operation(summary = "Dump the JFR recording", description = "Downloads the data recorded so far as a .jfr file. The recording keeps running.")
+    public Response dump() {
+        java.nio.file.Path file;
+        try {
+            file = recordingService.dump();
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.NOT_FOUND).type(MediaType.APPLICATION_JSON).entity(Collections.singletonMap("error", e.getMessage())).build();
+        } catch (IOException e) {
+            LOG.errorf(e, "Failed to dump JFR recording");
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).type(MediaType.APPLICATION_JSON).entity(Collections.singletonMap("error", "Failed to dump recording: " + e.getMessage())).build();
+        }
+
+        StreamingOutput body = output -> {
+            try {
+                Files.copy(file, output);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return Response.ok(body)
+                .header("Content-Disposition", "attachment; filename=\"" + file.getFileName() + "\"")
+                .build();
+    }
+
+    @POST
+    @Path("/stop")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Stop the JFR recording", description = "Stops and discards the running recording.")
+    public Response stop() {
+        if (!recordingService.stop()) {
+            return Response.status(Response.Status.NOT_FOUND).entity(Collections.singletonMap("error", "No recording is running")).build();
+        }
+        return Response.ok(recordingService.status()).build();
+    }
+}
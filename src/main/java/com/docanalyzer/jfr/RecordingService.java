@@ -0,0 +1,123 @@
+package com.docanalyzer.jfr;
+
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Manages an on-demand JDK Flight Recorder recording of the application.
+ * <p>
+ * Recordings use the JDK's "default" settings, which are meant for continuous use in
+ * production, and include the Documind pipeline events of this package. Older data is
+ * discarded once the configured maximum age or size is reached.
+ */
+@ApplicationScoped
+public class RecordingService {
+
+    private static final String RECORDING_NAME = "documind";
+
+    @ConfigProperty(name = "documind.jfr.start-on-boot", defaultValue = "false")
+    boolean startOnBoot;
+
+    @ConfigProperty(name = "documind.jfr.max-age", defaultValue = "PT30M")
+    Duration defaultMaxAge;
+
+    @ConfigProperty(name = "documind.jfr.max-size", defaultValue = "268435456")
+    long defaultMaxSize;
+
+    private Recording recording;
+
+    void onStart(@Observes StartupEvent event) {
+        if (startOnBoot) {
+            start(defaultMaxAge, defaultMaxSize);
+        }
+    }
+
+    /**
+     * Starts a recording unless one is already running.
+     *
+     * @param maxAge How long recorded data is kept, or null for the configured default.
+     * @param maxSize How many bytes of recorded data are kept, or 0 for the configured default.
+     * @return true if a recording was started, false if one was already running.
+     */
+    public synchronized boolean start(Duration maxAge, long maxSize) {
+        if (isRunning()) {
+            return false;
+        }
+        try {
+            Recording newRecording = new Recording(Configuration.getConfiguration("default"));
+            newRecording.setName(RECORDING_NAME);
+            newRecording.setToDisk(true);
+            newRecording.setMaxAge(maxAge != null ? maxAge : defaultMaxAge);
+            newRecording.setMaxSize(maxSize > 0 ? maxSize : defaultMaxSize);
+            newRecording.start();
+            recording = newRecording;
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Failed to load the JFR default configuration", e);
+        }
+        Log.infof("Started JFR recording %d", recording.getId());
+        return true;
+    }
+
+    /**
+     * Writes the data recorded so far to a temporary file. The recording keeps running.
+     *
+     * @return The path of the dump; the caller is responsible for deleting it.
+     * @throws IllegalStateException if no recording is running.
+     */
+    public synchronized Path dump() throws IOException {
+        if (!isRunning()) {
+            throw new IllegalStateException("No JFR recording is running");
+        }
+        Path file = Files.createTempFile("documind-", ".jfr");
+        recording.dump(file);
+        Log.infof("Dumped JFR recording %d to %s", recording.getId(), file);
+        return file;
+    }
+
+    /**
+     * Stops and discards the running recording.
+     *
+     * @return true if a recording was stopped, false if none was running.
+     */
+    public synchronized boolean stop() {
+        if (!isRunning()) {
+            return false;
+        }
+        recording.stop();
+        recording.close();
+        Log.infof("Stopped JFR recording %d", recording.getId());
+        recording = null;
+        return true;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", isRunning());
+        if (recording != null) {
+            status.put("id", recording.getId());
+            status.put("startTime", String.valueOf(recording.getStartTime()));
+            status.put("maxAge", String.valueOf(recording.getMaxAge()));
+            status.put("maxSize", recording.getMaxSize());
+            status.put("size", recording.getSize());
+        }
+        return status;
+    }
+
+    private boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+}
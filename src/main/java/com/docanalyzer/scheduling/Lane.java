@@ -0,0 +1,17 @@
+package com.docanalyzer.scheduling;
+
+/**
+ * Priority lanes of the {@link WorkScheduler}.
+ */
+public enum Lane {
+
+    /**
+     * Chat messages and question batches: a user is waiting for the answer.
+     */
+    INTERACTIVE,
+
+    /**
+     * Document and archive ingestion: long-running work that can wait.
+     */
+    BULK
+}
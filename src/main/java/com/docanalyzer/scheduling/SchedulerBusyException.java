@@ -0,0 +1,11 @@
+package com.docanalyzer.scheduling;
+
+/**
+ * Thrown when no execution slot became free within {@code documind.scheduler.acquire-timeout}.
+ */
+public class SchedulerBusyException extends RuntimeException {
+
+    public SchedulerBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,274 @@
+package com.docanalyzer.scheduling;
+
+import com.docanalyzer.chat.RequestCancellation;
+import com.docanalyzer.chat.RequestCancelledException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admits chat and ingestion requests into a fixed number of execution slots, so that bulk
+ * uploads cannot starve interactive chat of threads, Presidio or LLM capacity.
+ * <p>
+ * Each {@link Lane} has its own queue. When a slot frees up and both lanes are waiting, the
+ * slot goes to the lanes in proportion to their weights (stride scheduling); the bulk lane can
+ * in addition never hold more than {@code documind.scheduler.bulk.max-running} slots, leaving
+ * room for interactive requests. Within a lane, sessions are served round-robin, so one session
+ * queueing many requests does not delay the others.
+ * <p>
+ * The work runs on the caller's thread once its slot is granted. A request that waits longer
+ * than {@code documind.scheduler.acquire-timeout}, or whose client goes away, leaves the queue.
+ */
+@ApplicationScoped
+public class WorkScheduler {
+
+    private static final long STRIDE = 1_000_000L;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "documind.scheduler.slots", defaultValue = "16")
+    int slots;
+
+    @ConfigProperty(name = "documind.scheduler.interactive.weight", defaultValue = "4")
+    int interactiveWeight;
+
+    @ConfigProperty(name = "documind.scheduler.bulk.weight", defaultValue = "1")
+    int bulkWeight;
+
+    @ConfigProperty(name = "documind.scheduler.bulk.max-running", defaultValue = "4")
+    int bulkMaxRunning;
+
+    @ConfigProperty(name = "documind.scheduler.acquire-timeout", defaultValue = "PT30S")
+    Duration acquireTimeout;
+
+    private final Map<Lane, LaneQueue> lanes = new EnumMap<>(Lane.class);
+    private int running;
+    private long virtualTime; // pass of the lane served last
+
+    @PostConstruct
+    void init() {
+        lanes.put(Lane.INTERACTIVE, new LaneQueue(Lane.INTERACTIVE, interactiveWeight, slots));
+        lanes.put(Lane.BULK, new LaneQueue(Lane.BULK, bulkWeight, Math.min(bulkMaxRunning, slots)));
+        lanes.values().forEach(queue -> {
+            Tags tags = Tags.of("lane", queue.lane.name().toLowerCase());
+            registry.gauge("documind.scheduler.queue.depth", tags, queue.depth);
+            registry.gauge("documind.scheduler.running", tags, queue.running);
+            queue.waitTimer = Timer.builder("documind.scheduler.wait")
+                    .description("Time requests waited for an execution slot")
+                    .tags(tags)
+                    .register(registry);
+            queue.timeouts = Counter.builder("documind.scheduler.timeouts")
+                    .description("Requests rejected because no execution slot became free in time")
+                    .tags(tags)
+                    .register(registry);
+        });
+    }
+
+    /**
+     * Waits for an execution slot in the given lane.
+     *
+     * @param lane The lane of the work.
+     * @param sessionId The chat session the work is done for.
+     * @return The slot, to be closed when the work is done.
+     * @throws InterruptedException if interrupted while waiting; no slot is held then.
+     * @throws SchedulerBusyException if no slot became free within the acquire timeout.
+     */
+    public Slot acquire(Lane lane, String sessionId) throws InterruptedException {
+        return acquire(lane, sessionId, RequestCancellation.none());
+    }
+
+    /**
+     * Waits for an execution slot in the given lane, giving up as soon as the request is cancelled.
+     *
+     * @param lane The lane of the work.
+     * @param sessionId The chat session the work is done for.
+     * @param cancellation Cancelled when the client is gone; removes the request from the queue.
+     * @return The slot, to be closed when the work is done.
+     * @throws InterruptedException if interrupted while waiting; no slot is held then.
+     * @throws SchedulerBusyException if no slot became free within the acquire timeout.
+     * @throws RequestCancelledException if the request was cancelled while waiting.
+     */
+    public Slot acquire(Lane lane, String sessionId, RequestCancellation cancellation) throws InterruptedException {
+        cancellation.throwIfCancelled();
+        LaneQueue queue = lanes.get(lane);
+        Waiter waiter = new Waiter(sessionId);
+        long start = System.nanoTime();
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                // A lane that was idle does not get credit for the time it did not use
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            queue.add(waiter);
+            dispatch();
+        }
+
+        try (RequestCancellation.Registration registration = cancellation.onCancel(() -> withdraw(queue, waiter))) {
+            waiter.granted.await(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            if (!withdraw(queue, waiter)) {
+                release(queue);
+            }
+            throw e;
+        }
+        // Woken by a grant, by the cancellation withdrawing the waiter, or by the timeout
+        if (withdraw(queue, waiter)) {
+            cancellation.throwIfCancelled();
+            queue.timeouts.increment();
+            throw new SchedulerBusyException("No execution slot became free within " + acquireTimeout);
+        }
+        queue.waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Slot(queue);
+    }
+
+    /**
+     * Takes a waiter out of its queue and wakes it, unless it has been granted a slot already.
+     *
+     * @return true if the waiter holds no slot, false if it was granted one.
+     */
+    private synchronized boolean withdraw(LaneQueue queue, Waiter waiter) {
+        if (!waiter.withdrawn && queue.remove(waiter)) {
+            waiter.withdrawn = true;
+            waiter.granted.countDown();
+        }
+        return waiter.withdrawn;
+    }
+
+    private synchronized void release(LaneQueue queue) {
+        running--;
+        queue.running.decrementAndGet();
+        dispatch();
+    }
+
+    /**
+     * Grants free slots to waiting requests, picking the eligible lane with the lowest pass.
+     */
+    private void dispatch() {
+        while (running < slots) {
+            LaneQueue next = null;
+            for (LaneQueue queue : lanes.values()) {
+                if (!queue.isEmpty() && queue.running.get() < queue.maxRunning
+                        && (next == null || queue.pass < next.pass)) {
+                    next = queue;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+
+            Waiter waiter = next.poll();
+            virtualTime = next.pass;
+            next.pass += STRIDE / next.weight;
+            running++;
+            next.running.incrementAndGet();
+            waiter.granted.countDown();
+        }
+    }
+
+    /**
+     * An execution slot; closing it lets the next request in.
+     */
+    public class Slot implements AutoCloseable {
+        private final LaneQueue queue;
+        private boolean closed;
+
+        private Slot(LaneQueue queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(queue);
+        }
+    }
+
+    private static class Waiter {
+        private final String sessionId;
+        private final CountDownLatch granted = new CountDownLatch(1);
+        private boolean withdrawn; // guarded by the scheduler's lock
+
+        Waiter(String sessionId) {
+            this.sessionId = sessionId;
+        }
+    }
+
+    /**
+     * The waiting requests of one lane, grouped by session and served round-robin.
+     * Guarded by the scheduler's lock, except for the counters read by the gauges.
+     */
+    private static class LaneQueue {
+        private final Lane lane;
+        private final int weight;
+        private final int maxRunning;
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        // Sessions in round-robin order; a session moves to the end once one of its requests is served
+        private final LinkedHashMap<String, ArrayDeque<Waiter>> sessions = new LinkedHashMap<>();
+        private long pass;
+        private Timer waitTimer;
+        private Counter timeouts;
+
+        LaneQueue(Lane lane, int weight, int maxRunning) {
+            this.lane = lane;
+            this.weight = Math.max(weight, 1);
+            this.maxRunning = maxRunning;
+        }
+
+        boolean isEmpty() {
+            return sessions.isEmpty();
+        }
+
+        void add(Waiter waiter) {
+            sessions.computeIfAbsent(waiter.sessionId, k -> new ArrayDeque<>()).add(waiter);
+            depth.incrementAndGet();
+        }
+
+        Waiter poll() {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> first = sessions.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Waiter>> session = first.next();
+            first.remove();
+            Waiter waiter = session.getValue().poll();
+            if (!session.getValue().isEmpty()) {
+                sessions.put(session.getKey(), session.getValue());
+            }
+            depth.decrementAndGet();
+            return waiter;
+        }
+
+        /**
+         * @return true if the waiter was still queued (and has now been removed).
+         */
+        boolean remove(Waiter waiter) {
+            ArrayDeque<Waiter> queued = sessions.get(waiter.sessionId);
+            if (queued == null || !queued.remove(waiter)) {
+                return false;
+            }
+            if (queued.isEmpty()) {
+                sessions.remove(waiter.sessionId);
+            }
+            depth.decrementAndGet();
+            return true;
+        }
+    }
+}
@@ -19,7 +19,7 @@ export interface ChatMessage {
 }
 
 export interface StreamEvent {
-  type: 'token' | 'chart' | 'complete' | 'error';
+  type: 'token' | 'chart' | 'progress' | 'complete' | 'error';
   data?: any;
 }
 
@@ -113,6 +113,7 @@ export class ApiService {
 
           let eventType = 'message'; // Default SSE event type
           let eventData = '';
+          let hasData = false;
 
           const lines = message.split('\n');
           for (const line of lines) {
@@ -120,13 +121,21 @@ export class ApiService {
               eventType = line.substring('event:'.length).trim();
             } else if (line.startsWith('data:')) {
               eventData = line.substring('data:'.length).trim();
+              hasData = true;
             }
           }
 
+          // Comment-only messages (": keep-alive" heartbeats) carry no data and are not events
+          if (!hasData) {
+            continue;
+          }
+
           try {
             const parsedData = JSON.parse(eventData); // Backend sends JSON in 'data' field
             if (eventType === 'chart') {
               subject.next({ type: 'chart', data: parsedData });
+            } else if (eventType === 'progress') { // Map-reduce answering: { completed, total } segments
+              subject.next({ type: 'progress', data: parsedData });
             } else if (eventType === 'complete') { // Backend sends event: complete
               subject.next({ type: 'complete', data: parsedData });
               subject.complete();
@@ -0,0 +1,68 @@
+package com.docanalyzer.anonymization;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaceholderRegistryTest {
+
+    @Test
+    void sameValueGetsTheSamePlaceholder() {
+        PlaceholderRegistry registry = new PlaceholderRegistry();
+
+        assertEquals("[[PERSON_1]]", registry.placeholderFor("person", "John Doe"));
+        assertEquals("[[PERSON_2]]", registry.placeholderFor("PERSON", "Jane Roe"));
+        assertEquals("[[PERSON_1]]", registry.placeholderFor("PERSON", "John Doe"));
+        assertEquals("[[LOCATION_1]]", registry.placeholderFor("LOCATION", "John Doe"));
+    }
+
+    @Test
+    void seededRegistryReusesStoredPlaceholders() {
+        PlaceholderRegistry registry = new PlaceholderRegistry(List.of(
+                mapping("[[PERSON_1]]", "John Doe"),
+                mapping("[[EMAIL_ADDRESS_2]]", "john@example.com")));
+
+        assertEquals("[[PERSON_1]]", registry.placeholderFor("PERSON", "John Doe"));
+        assertEquals("[[EMAIL_ADDRESS_2]]", registry.placeholderFor("EMAIL_ADDRESS", "john@example.com"));
+        assertTrue(registry.unsavedMappings().isEmpty());
+    }
+
+    @Test
+    void newPlaceholdersContinueAfterTheHighestStoredNumber() {
+        PlaceholderRegistry registry = new PlaceholderRegistry(List.of(
+                mapping("[[PERSON_3]]", "John Doe"),
+                mapping("[[PERSON_1]]", "Jane Roe"),
+                mapping("[[EMAIL_ADDRESS_2]]", "john@example.com")));
+
+        assertEquals("[[PERSON_4]]", registry.placeholderFor("PERSON", "Max Muster"));
+        assertEquals("[[EMAIL_ADDRESS_3]]", registry.placeholderFor("EMAIL_ADDRESS", "jane@example.com"));
+        assertEquals("[[LOCATION_1]]", registry.placeholderFor("LOCATION", "Zurich"));
+    }
+
+    @Test
+    void onlyNewMappingsAreUnsavedUntilMarked() {
+        PlaceholderRegistry registry = new PlaceholderRegistry(List.of(mapping("[[PERSON_1]]", "John Doe")));
+        registry.placeholderFor("PERSON", "John Doe");
+        registry.placeholderFor("PERSON", "Jane Roe");
+        registry.placeholderFor("LOCATION", "Zurich");
+
+        Map<String, String> unsaved = registry.unsavedMappings();
+        assertEquals(Map.of("[[PERSON_2]]", "Jane Roe", "[[LOCATION_1]]", "Zurich"), unsaved);
+
+        registry.markSaved(Set.of("[[PERSON_2]]"));
+        assertEquals(Map.of("[[LOCATION_1]]", "Zurich"), registry.unsavedMappings());
+    }
+
+    private static PlaceholderMapping mapping(String placeholder, String originalValue) {
+        PlaceholderMapping mapping = new PlaceholderMapping();
+        mapping.setChatSessionId("session");
+        mapping.setPlaceholder(placeholder);
+        mapping.setOriginalValue(originalValue);
+        return mapping;
+    }
+}
@@ -0,0 +1,102 @@
+package com.docanalyzer.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatServiceSegmentsTest {
+
+    @Test
+    void segmentsCoverTheTextWithoutOverlap() {
+        String text = "word ".repeat(1_000);
+
+        List<String> segments = ChatService.splitIntoSegments(text, 97);
+
+        assertEquals(text, String.join("", segments));
+        for (String segment : segments) {
+            assertTrue(segment.length() <= 97);
+        }
+    }
+
+    @Test
+    void shortTextIsASingleSegment() {
+        assertEquals(List.of("short text"), ChatService.splitIntoSegments("short text", 100));
+        assertEquals(List.of(), ChatService.splitIntoSegments("", 100));
+    }
+
+    @Test
+    void prefersAParagraphBreakOverWhitespaceInTheLastTenth() {
+        String first = "a".repeat(92) + "\n\n" + "b c";
+        String text = first + "d".repeat(50);
+
+        List<String> segments = ChatService.splitIntoSegments(text, 100);
+
+        assertEquals("a".repeat(92) + "\n\n", segments.get(0));
+        assertEquals(text, String.join("", segments));
+    }
+
+    @Test
+    void cutsAtWhitespaceInTheLastTenth() {
+        String text = "a".repeat(95) + " " + "b".repeat(50);
+
+        List<String> segments = ChatService.splitIntoSegments(text, 100);
+
+        assertEquals("a".repeat(95) + " ", segments.get(0));
+        assertEquals("b".repeat(50), segments.get(1));
+    }
+
+    @Test
+    void cutsHardWithoutBreakButNeverInsideASurrogatePair() {
+        String text = "a".repeat(99) + "\uD83D\uDE00" + "b".repeat(10);
+
+        List<String> segments = ChatService.splitIntoSegments(text, 100);
+
+        assertEquals("a".repeat(99), segments.get(0));
+        assertTrue(segments.get(1).startsWith("\uD83D\uDE00"));
+        assertEquals(text, String.join("", segments));
+    }
+
+    @Test
+    void groupsNotesInOrderWithinTheLimit() {
+        List<String> notes = List.of("a".repeat(40), "b".repeat(40), "c".repeat(40), "d".repeat(10));
+
+        List<List<String>> groups = ChatService.groupNotes(notes, 100);
+
+        assertEquals(List.of(List.of(notes.get(0), notes.get(1)), List.of(notes.get(2), notes.get(3))), groups);
+    }
+
+    @Test
+    void capsEachNoteAtHalfTheLimit() {
+        List<String> notes = List.of("a".repeat(300), "b".repeat(300), "c".repeat(300));
+
+        List<List<String>> groups = ChatService.groupNotes(notes, 100);
+
+        assertEquals(List.of(List.of("a".repeat(50), "b".repeat(50)), List.of("c".repeat(50))), groups);
+    }
+
+    @Test
+    void capNeverSplitsASurrogatePair() {
+        String note = "a".repeat(49) + "\uD83D\uDE00" + "b".repeat(10);
+
+        List<List<String>> groups = ChatService.groupNotes(List.of(note), 100);
+
+        assertEquals("a".repeat(49), groups.get(0).get(0));
+    }
+
+    @Test
+    void noNotesMakeNoGroups() {
+        assertEquals(List.of(), ChatService.groupNotes(List.of(), 100));
+    }
+
+    @Test
+    void onlyAnswersStartingWithTheMarkerAreIrrelevant() {
+        assertFalse(ChatService.isRelevant(null));
+        assertFalse(ChatService.isRelevant("NO RELEVANT INFORMATION"));
+        assertFalse(ChatService.isRelevant("  NO RELEVANT INFORMATION.\n"));
+        assertTrue(ChatService.isRelevant("The contract ends in May. There is NO RELEVANT INFORMATION on fees."));
+    }
+}
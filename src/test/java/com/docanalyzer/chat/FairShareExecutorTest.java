@@ -0,0 +1,149 @@
+package com.docanalyzer.chat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FairShareExecutorTest {
+
+    private static final int PARALLELISM = 4;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(PARALLELISM);
+    private final FairShareExecutor executor = new FairShareExecutor(pool, PARALLELISM);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void resultsKeepTheOrderOfTheCalls() {
+        List<Supplier<Integer>> calls = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int value = i;
+            calls.add(() -> value);
+        }
+
+        List<CompletableFuture<Integer>> results = executor.submitAll(calls);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, results.get(i).join());
+        }
+        assertEquals(0, executor.activeGroups());
+    }
+
+    @Test
+    void aLoneRequestUsesThePoolButNoMore() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Supplier<Void>> calls = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            calls.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(10);
+                running.decrementAndGet();
+                return null;
+            });
+        }
+
+        CompletableFuture.allOf(executor.submitAll(calls).toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(PARALLELISM, maxRunning.get());
+    }
+
+    @Test
+    void aLaterRequestIsNotQueuedBehindALargeFanOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        List<Supplier<Void>> large = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String name = "large-" + i;
+            large.add(() -> {
+                started.add(name);
+                await(release);
+                return null;
+            });
+        }
+        List<CompletableFuture<Void>> largeResults = executor.submitAll(large);
+        awaitSize(started, PARALLELISM);
+
+        CountDownLatch smallStarted = new CountDownLatch(1);
+        List<CompletableFuture<Void>> smallResults = executor.submitAll(List.of(() -> {
+            started.add("small");
+            smallStarted.countDown();
+            return null;
+        }));
+        release.countDown();
+
+        // The small request starts with the first free thread, not after the 36 queued calls
+        assertTrue(smallStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture.allOf(smallResults.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(largeResults.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        assertTrue(started.indexOf("small") <= PARALLELISM * 2, "small started at " + started.indexOf("small"));
+    }
+
+    @Test
+    void cancelledCallsThatHaveNotStartedAreSkipped() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        List<Supplier<Void>> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            calls.add(() -> {
+                ran.incrementAndGet();
+                await(release);
+                return null;
+            });
+        }
+
+        List<CompletableFuture<Void>> results = executor.submitAll(calls);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ran.get() < PARALLELISM) {
+            assertTrue(System.nanoTime() < deadline, "The calls did not start");
+            Thread.sleep(5);
+        }
+        results.forEach(result -> result.cancel(false));
+        release.countDown();
+
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(PARALLELISM, ran.get());
+        assertEquals(0, executor.activeGroups());
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (list.size() < size) {
+            assertTrue(System.nanoTime() < deadline, "The calls did not start");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.docanalyzer.chat;
+
+import com.docanalyzer.huggingface.PromptRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmRequestCoalescerTest {
+
+    private static final PromptRequest REQUEST = PromptRequest.of("model", "What is the governing law?");
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CompletableFuture<String> upstream = new CompletableFuture<>();
+
+    private LlmRequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new LlmRequestCoalescer();
+        coalescer.registry = registry;
+        coalescer.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void identicalRequestsShareOneCall() throws Exception {
+        Future<String> first = execute(new RequestCancellation());
+        Future<String> second = execute(new RequestCancellation());
+        awaitCoalesced(1);
+
+        upstream.complete("Swiss law");
+
+        assertEquals("Swiss law", first.get(5, TimeUnit.SECONDS));
+        assertEquals("Swiss law", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void earlierCallerDetachingKeepsTheUpstreamCall() throws Exception {
+        RequestCancellation leaving = new RequestCancellation();
+        Future<String> left = execute(leaving);
+        Future<String> staying = execute(new RequestCancellation());
+        awaitCoalesced(1);
+
+        leaving.cancel();
+
+        assertCancelled(left);
+        assertFalse(upstream.isCancelled());
+        assertEquals(0.0, registry.counter("documind.llm.cancelled").count());
+
+        upstream.complete("Swiss law");
+        assertEquals("Swiss law", staying.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lastCallerDetachingAbortsTheUpstreamCall() throws Exception {
+        RequestCancellation first = new RequestCancellation();
+        RequestCancellation second = new RequestCancellation();
+        Future<String> firstAnswer = execute(first);
+        Future<String> secondAnswer = execute(second);
+        awaitCoalesced(1);
+
+        second.cancel();
+        assertCancelled(secondAnswer);
+        assertFalse(upstream.isCancelled());
+
+        first.cancel();
+        assertCancelled(firstAnswer);
+        assertTrue(upstream.isCancelled());
+        assertEquals(1.0, registry.counter("documind.llm.cancelled").count());
+        // The call had been sent, so its prompt does not count as saved
+        assertEquals(1.0, registry.counter("documind.llm.cancelled.in-flight").count());
+        assertEquals(0.0, registry.counter("documind.llm.cancelled.unsent.tokens").count());
+    }
+
+    @Test
+    void requestCancelledBeforeItIsSentCountsItsPromptTokens() {
+        RequestCancellation cancellation = new RequestCancellation();
+        cancellation.cancel();
+
+        assertThrows(RequestCancelledException.class, () -> coalescer.execute(REQUEST, cancellation, () -> {
+            calls.incrementAndGet();
+            return upstream;
+        }));
+
+        assertEquals(0, calls.get());
+        assertEquals(0.0, registry.counter("documind.llm.cancelled.in-flight").count());
+        assertEquals((double) REQUEST.promptChars() / 4, registry.counter("documind.llm.cancelled.unsent.tokens").count());
+    }
+
+    @Test
+    void requestAfterAnAbandonedCallStartsANewOne() throws Exception {
+        RequestCancellation cancellation = new RequestCancellation();
+        Future<String> abandoned = execute(cancellation);
+        awaitCalls(1);
+        cancellation.cancel();
+        assertCancelled(abandoned);
+
+        CompletableFuture<String> retry = CompletableFuture.completedFuture("Swiss law");
+        String answer = coalescer.execute(REQUEST, new RequestCancellation(), () -> {
+            calls.incrementAndGet();
+            return retry;
+        });
+
+        assertEquals("Swiss law", answer);
+        assertEquals(2, calls.get());
+    }
+
+    private Future<String> execute(RequestCancellation cancellation) {
+        return callers.submit(() -> coalescer.execute(REQUEST, cancellation, () -> {
+            calls.incrementAndGet();
+            return upstream;
+        }));
+    }
+
+    private void awaitCoalesced(int expected) throws InterruptedException {
+        awaitCalls(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.counter("documind.llm.coalesced").count() < expected) {
+            assertTrue(System.nanoTime() < deadline, "Requests were not coalesced");
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitCalls(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls.get() < expected) {
+            assertTrue(System.nanoTime() < deadline, "The upstream call was not started");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void assertCancelled(Future<String> answer) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> answer.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RequestCancelledException.class, e.getCause());
+    }
+}
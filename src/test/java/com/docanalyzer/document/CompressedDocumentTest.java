@@ -0,0 +1,70 @@
+package com.docanalyzer.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompressedDocumentTest {
+
+    // U+1F600 is encoded as the surrogate pair 😀
+    private static final String EMOJI = "😀";
+
+    @Test
+    void multiBlockTextRoundTrips() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("Clause ").append(i).append(": Zahlung gemäß § 288 BGB an [[PERSON_").append(i % 7).append("]].\n");
+        }
+
+        CompressedDocument document = CompressedDocument.compress(text.toString(), 4096, 6);
+
+        assertEquals(text.toString(), decompress(document));
+        assertEquals(text.length(), document.length());
+        assertEquals(text.toString().getBytes(StandardCharsets.UTF_8).length, document.originalBytes());
+        assertEquals((text.length() + 4095) / 4096, document.blockCount());
+    }
+
+    @Test
+    void surrogatePairStraddlingABlockBoundaryStaysWhole() {
+        // The pair would occupy the last char of the first block and the first char of the second
+        String text = "1234567" + EMOJI + "89abcdef";
+
+        CompressedDocument document = CompressedDocument.compress(text, 8, 6);
+
+        assertEquals(text, decompress(document));
+        assertEquals(3, document.blockCount()); // "1234567", EMOJI + "89abcd", "ef"
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, document.originalBytes());
+    }
+
+    @Test
+    void textMadeOfSurrogatePairsRoundTrips() {
+        String text = EMOJI.repeat(1000);
+
+        CompressedDocument document = CompressedDocument.compress(text, 7, 1);
+
+        assertEquals(text, decompress(document));
+    }
+
+    @Test
+    void emptyTextHasNoBlocks() {
+        CompressedDocument document = CompressedDocument.compress("", 4096, 6);
+
+        assertEquals("", decompress(document));
+        assertEquals(0, document.blockCount());
+        assertEquals(1.0, document.compressionRatio());
+    }
+
+    @Test
+    void blockMustHoldASurrogatePair() {
+        assertThrows(IllegalArgumentException.class, () -> CompressedDocument.compress("text", 1, 6));
+    }
+
+    private static String decompress(CompressedDocument document) {
+        StringBuilder text = new StringBuilder();
+        document.appendTo(text);
+        return text.toString();
+    }
+}
@@ -0,0 +1,146 @@
+package com.docanalyzer.scheduling;
+
+import com.docanalyzer.chat.RequestCancellation;
+import com.docanalyzer.chat.RequestCancelledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkSchedulerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService requests = Executors.newCachedThreadPool();
+    private final List<String> served = Collections.synchronizedList(new ArrayList<>());
+    private final List<Future<?>> pending = new ArrayList<>();
+
+    private WorkScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        // A single slot makes the order in which waiting requests are served observable
+        scheduler = new WorkScheduler();
+        scheduler.registry = registry;
+        scheduler.slots = 1;
+        scheduler.interactiveWeight = 4;
+        scheduler.bulkWeight = 1;
+        scheduler.bulkMaxRunning = 1;
+        scheduler.acquireTimeout = Duration.ofSeconds(30);
+        scheduler.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        requests.shutdownNow();
+    }
+
+    @Test
+    void lanesShareSlotsInProportionToTheirWeights() throws Exception {
+        WorkScheduler.Slot busy = scheduler.acquire(Lane.INTERACTIVE, "holder");
+        for (int i = 1; i <= 8; i++) {
+            enqueue(Lane.INTERACTIVE, "chat-" + i, "I" + i);
+        }
+        enqueue(Lane.BULK, "upload-1", "B1");
+        enqueue(Lane.BULK, "upload-2", "B2");
+
+        busy.close();
+        awaitServed();
+
+        // The bulk lane was idle, so it starts level with the interactive lane's last pass
+        assertEquals(List.of("B1", "I1", "I2", "I3", "I4", "B2", "I5", "I6", "I7", "I8"), served);
+    }
+
+    @Test
+    void sessionsAreServedRoundRobinWithinALane() throws Exception {
+        WorkScheduler.Slot busy = scheduler.acquire(Lane.INTERACTIVE, "holder");
+        enqueue(Lane.INTERACTIVE, "s1", "s1-a");
+        enqueue(Lane.INTERACTIVE, "s1", "s1-b");
+        enqueue(Lane.INTERACTIVE, "s1", "s1-c");
+        enqueue(Lane.INTERACTIVE, "s2", "s2-a");
+        enqueue(Lane.INTERACTIVE, "s2", "s2-b");
+        enqueue(Lane.INTERACTIVE, "s3", "s3-a");
+
+        busy.close();
+        awaitServed();
+
+        assertEquals(List.of("s1-a", "s2-a", "s3-a", "s1-b", "s2-b", "s1-c"), served);
+    }
+
+    @Test
+    void waitingLongerThanTheTimeoutIsRejected() throws Exception {
+        scheduler.acquireTimeout = Duration.ofMillis(50);
+        try (WorkScheduler.Slot busy = scheduler.acquire(Lane.INTERACTIVE, "holder")) {
+            assertThrows(SchedulerBusyException.class, () -> scheduler.acquire(Lane.BULK, "upload"));
+            assertEquals(0, queueDepth());
+            assertEquals(1.0, registry.counter("documind.scheduler.timeouts", "lane", "bulk").count());
+        }
+        scheduler.acquire(Lane.BULK, "upload").close();
+    }
+
+    @Test
+    void cancellingAWaitingRequestRemovesItFromTheQueue() throws Exception {
+        RequestCancellation cancellation = new RequestCancellation();
+        try (WorkScheduler.Slot busy = scheduler.acquire(Lane.INTERACTIVE, "holder")) {
+            Future<WorkScheduler.Slot> waiting = requests.submit(
+                    () -> scheduler.acquire(Lane.INTERACTIVE, "gone", cancellation));
+            awaitQueueDepth(1);
+
+            cancellation.cancel();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RequestCancelledException.class, e.getCause());
+            assertEquals(0, queueDepth());
+        }
+        // The withdrawn request did not take the freed slot
+        scheduler.acquire(Lane.INTERACTIVE, "next").close();
+    }
+
+    /**
+     * Queues a request that records its name once served and frees its slot right away.
+     */
+    private void enqueue(Lane lane, String sessionId, String name) throws InterruptedException {
+        int depth = queueDepth();
+        pending.add(requests.submit(() -> {
+            try (WorkScheduler.Slot slot = scheduler.acquire(lane, sessionId)) {
+                served.add(name);
+            }
+            return null;
+        }));
+        awaitQueueDepth(depth + 1);
+    }
+
+    private void awaitServed() throws Exception {
+        for (Future<?> request : pending) {
+            request.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private void awaitQueueDepth(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queueDepth() != expected) {
+            assertTrue(System.nanoTime() < deadline, "The request was not queued");
+            Thread.sleep(5);
+        }
+    }
+
+    private int queueDepth() {
+        return (int) registry.find("documind.scheduler.queue.depth").gauges().stream()
+                .mapToDouble(gauge -> gauge.value())
+                .sum();
+    }
+}